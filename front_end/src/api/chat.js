@@ -2,13 +2,16 @@ import request from "../utils/request";
 import { fetchEventSource } from '@microsoft/fetch-event-source';
 
 /**
- * 获取所有聊天会话ID列表
+ * 分页获取聊天会话ID列表
+ * @param {string} [cursor] - 上一页返回的 nextCursor，为空时从头开始
+ * @param {number} [limit] - 每页条数
  * @returns {Promise} 
  */
-export function getChatIds() {
+export function getChatIds(cursor, limit) {
   return request({
     url: '/ai/history/getChatIds',
-    method: 'get'
+    method: 'get',
+    params: { cursor, limit }
   });
 }
 
@@ -0,0 +1,266 @@
+package com.datamining.ssedemo.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 基于随机超平面 LSH 的近似最近邻索引，向量为 L2 归一化的稀疏向量，相似度为余弦相似度。
+ * <p>
+ * 共 tables 张哈希表，每张表取 bitsPerTable 个超平面的符号作为桶号，再与调用方给出的分区号（例如标的集合的哈希）合并，
+ * 不同分区的条目不会落进同一个桶；查询只对与查询落在同一个桶里的条目计算精确相似度，
+ * 因此查询耗时取决于桶的大小而不是索引总量。
+ * <p>
+ * 条目按写入顺序存放在环形槽位中，调用方需保证过期时间随写入单调不减（固定 TTL 即可），
+ * 这样最旧的条目总是最先过期：每次写入前从最旧处清理已过期的条目，查询时跳过尚未清理的过期条目。
+ * 容量满后同样覆盖最旧的条目。桶是带位置索引的基本类型数组，移除为 O(1)。
+ * 读写由读写锁保护，查询之间互不阻塞。
+ */
+public class LshIndex<V> {
+
+    /**
+     * 稀疏向量：indices 严格递增，与 values 一一对应。
+     */
+    public record SparseVector(int[] indices, float[] values) {
+    }
+
+    public record Match<V>(V value, double similarity) {
+    }
+
+    private final int tables;
+    private final int bitsPerTable;
+    private final float[][] hyperplanes;
+    private final List<Map<Integer, Bucket>> buckets;
+    private final SparseVector[] vectors;
+    private final Object[] values;
+    private final long[] expiresAt;
+    private final int[][] slotKeys;
+    /**
+     * 每个槽位在各张表对应桶中的下标，用于 O(1) 移除。
+     */
+    private final int[][] bucketPositions;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int next;
+    private int size;
+
+    public LshIndex(int dimension, int tables, int bitsPerTable, int capacity, long seed) {
+        if (bitsPerTable < 1 || bitsPerTable > 30) {
+            throw new IllegalArgumentException("bitsPerTable must be between 1 and 30");
+        }
+        this.tables = tables;
+        this.bitsPerTable = bitsPerTable;
+        Random random = new Random(seed);
+        this.hyperplanes = new float[tables * bitsPerTable][dimension];
+        for (float[] hyperplane : hyperplanes) {
+            for (int i = 0; i < dimension; i++) {
+                hyperplane[i] = (float) random.nextGaussian();
+            }
+        }
+        this.buckets = new ArrayList<>(tables);
+        for (int t = 0; t < tables; t++) {
+            buckets.add(new HashMap<>());
+        }
+        int slots = Math.max(1, capacity);
+        this.vectors = new SparseVector[slots];
+        this.values = new Object[slots];
+        this.expiresAt = new long[slots];
+        this.slotKeys = new int[slots][];
+        this.bucketPositions = new int[slots][tables];
+    }
+
+    /**
+     * @param partition      分区号，只有分区相同的条目才会被一起查询
+     * @param expiresAtNanos 过期时刻（{@link System#nanoTime()} 时间轴）
+     */
+    public void add(SparseVector vector, int partition, long expiresAtNanos, V value) {
+        int[] keys = signature(vector, partition);
+        lock.writeLock().lock();
+        try {
+            pruneExpired(System.nanoTime());
+            int slot = next;
+            if (vectors[slot] != null) {
+                unlink(slot);
+            } else {
+                size++;
+            }
+            vectors[slot] = vector;
+            values[slot] = value;
+            expiresAt[slot] = expiresAtNanos;
+            slotKeys[slot] = keys;
+            for (int t = 0; t < tables; t++) {
+                bucketPositions[slot][t] = buckets.get(t).computeIfAbsent(keys[t], k -> new Bucket()).add(slot);
+            }
+            next = (slot + 1) % vectors.length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 返回同一分区内未过期、相似度不低于 minSimilarity 且满足 accept 的最相似条目，没有时返回 null。
+     */
+    @SuppressWarnings("unchecked")
+    public Match<V> nearest(SparseVector query, int partition, long nowNanos, double minSimilarity, Predicate<V> accept) {
+        int[] keys = signature(query, partition);
+        lock.readLock().lock();
+        try {
+            long[] seen = null;
+            Match<V> best = null;
+            for (int t = 0; t < tables; t++) {
+                Bucket bucket = buckets.get(t).get(keys[t]);
+                if (bucket == null) {
+                    continue;
+                }
+                if (seen == null && tables > 1) {
+                    seen = new long[(vectors.length + 63) >>> 6];
+                }
+                for (int i = 0; i < bucket.size; i++) {
+                    int slot = bucket.slots[i];
+                    if (seen != null) {
+                        long bit = 1L << slot;
+                        if ((seen[slot >>> 6] & bit) != 0) {
+                            continue;
+                        }
+                        seen[slot >>> 6] |= bit;
+                    }
+                    if (nowNanos - expiresAt[slot] >= 0) {
+                        continue;
+                    }
+                    double similarity = dot(vectors[slot], query);
+                    if (similarity < minSimilarity || (best != null && similarity <= best.similarity())) {
+                        continue;
+                    }
+                    V value = (V) values[slot];
+                    if (accept.test(value)) {
+                        best = new Match<>(value, similarity);
+                    }
+                }
+            }
+            return best;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 从最旧的槽位开始移除已过期的条目，遇到未过期的即停止。调用方持有写锁。
+     */
+    private void pruneExpired(long nowNanos) {
+        while (size > 0) {
+            int oldest = Math.floorMod(next - size, vectors.length);
+            if (nowNanos - expiresAt[oldest] < 0) {
+                return;
+            }
+            unlink(oldest);
+            vectors[oldest] = null;
+            values[oldest] = null;
+            slotKeys[oldest] = null;
+            size--;
+        }
+    }
+
+    private void unlink(int slot) {
+        for (int t = 0; t < tables; t++) {
+            Map<Integer, Bucket> table = buckets.get(t);
+            int key = slotKeys[slot][t];
+            Bucket bucket = table.get(key);
+            if (bucket == null) {
+                continue;
+            }
+            int moved = bucket.remove(bucketPositions[slot][t]);
+            if (moved >= 0) {
+                bucketPositions[moved][t] = bucketPositions[slot][t];
+            }
+            if (bucket.size == 0) {
+                table.remove(key);
+            }
+        }
+    }
+
+    private int[] signature(SparseVector vector, int partition) {
+        int[] keys = new int[tables];
+        for (int t = 0; t < tables; t++) {
+            int key = 0;
+            for (int b = 0; b < bitsPerTable; b++) {
+                float[] hyperplane = hyperplanes[t * bitsPerTable + b];
+                double projection = 0;
+                for (int i = 0; i < vector.indices().length; i++) {
+                    projection += hyperplane[vector.indices()[i]] * vector.values()[i];
+                }
+                key = (key << 1) | (projection >= 0 ? 1 : 0);
+            }
+            // 桶号占低 bitsPerTable 位，分区号打散后放在其余位上
+            keys[t] = key ^ (partition * 0x9e3779b9 << bitsPerTable);
+        }
+        return keys;
+    }
+
+    /**
+     * 两个稀疏向量的点积，按递增的下标归并。
+     */
+    private static double dot(SparseVector a, SparseVector b) {
+        int[] ai = a.indices();
+        int[] bi = b.indices();
+        double sum = 0;
+        int i = 0;
+        int j = 0;
+        while (i < ai.length && j < bi.length) {
+            if (ai[i] == bi[j]) {
+                sum += a.values()[i++] * b.values()[j++];
+            } else if (ai[i] < bi[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 桶内的槽位列表，移除时用最后一个元素填补空位。
+     */
+    private static final class Bucket {
+        private int[] slots = new int[4];
+        private int size;
+
+        /**
+         * @return 新元素的下标
+         */
+        int add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size << 1);
+            }
+            slots[size] = slot;
+            return size++;
+        }
+
+        /**
+         * 移除 position 处的元素。
+         *
+         * @return 被移到 position 的槽位，没有移动时返回 -1
+         */
+        int remove(int position) {
+            int last = --size;
+            if (position == last) {
+                return -1;
+            }
+            int moved = slots[last];
+            slots[position] = moved;
+            return moved;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.datamining.ssedemo.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 带 TTL 的异步缓存，同一个 key 的并发未命中只会触发一次加载（single-flight）。
+ * <p>
+ * 加载结果为 null 或异常时不写入缓存，下一次请求会重新加载。
+ * 容量超出上限时优先淘汰已过期条目，其次淘汰最久未访问的条目。
+ * 指标：{@code <metricPrefix>.requests}（result=hit|miss|coalesced）、{@code <metricPrefix>.evictions}、{@code <metricPrefix>.size}。
+ */
+public class SingleFlightCache<K, V> {
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter evictions;
+
+    public SingleFlightCache(String metricPrefix, String name, int maxEntries, MeterRegistry meterRegistry) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.hits = requestCounter(metricPrefix, name, "hit", meterRegistry);
+        this.misses = requestCounter(metricPrefix, name, "miss", meterRegistry);
+        this.coalesced = requestCounter(metricPrefix, name, "coalesced", meterRegistry);
+        this.evictions = Counter.builder(metricPrefix + ".evictions")
+                .tag("cache", name)
+                .register(meterRegistry);
+        Gauge.builder(metricPrefix + ".size", entries, Map::size)
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 返回缓存值；未命中时调用 loader，并让同一时刻的其他调用方共享这次加载。
+     * 返回的 future 是共享结果的副本，调用方对其超时或取消不会影响其他调用方。
+     */
+    public CompletableFuture<V> get(K key, Duration ttl, Supplier<CompletableFuture<V>> loader) {
+        long now = System.nanoTime();
+        Entry<V> current = entries.get(key);
+        if (current != null && current.usable(now)) {
+            return share(current, now);
+        }
+        Entry<V> created = new Entry<>(now);
+        Entry<V> winner = entries.compute(key, (k, existing) ->
+                existing != null && existing.usable(now) ? existing : created);
+        if (winner != created) {
+            return share(winner, now);
+        }
+        misses.increment();
+        evictIfNeeded(now);
+
+        CompletableFuture<V> loading;
+        try {
+            loading = loader.get();
+        } catch (RuntimeException ex) {
+            loading = CompletableFuture.failedFuture(ex);
+        }
+        loading.whenComplete((value, ex) -> {
+            if (ex != null || value == null) {
+                entries.remove(key, created);
+            } else {
+                created.expiresAtNanos = System.nanoTime() + ttl.toNanos();
+            }
+            if (ex != null) {
+                created.future.completeExceptionally(ex);
+            } else {
+                created.future.complete(value);
+            }
+        });
+        return created.future.copy();
+    }
+
+    /**
+     * 只查询不加载：已完成且未过期时返回缓存值并计为命中，否则返回 null 并计为未命中。
+     */
+    public V getIfPresent(K key) {
+        long now = System.nanoTime();
+        Entry<V> current = entries.get(key);
+        if (current == null || !current.future.isDone() || !current.usable(now)) {
+            misses.increment();
+            return null;
+        }
+        current.lastAccessNanos = now;
+        hits.increment();
+        return current.future.getNow(null);
+    }
+
+    /**
+     * 直接写入一个已知的值，覆盖同 key 的旧条目；value 为 null 时忽略。
+     */
+    public void put(K key, V value, Duration ttl) {
+        if (value == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        Entry<V> entry = new Entry<>(now);
+        entry.expiresAtNanos = now + ttl.toNanos();
+        entry.future.complete(value);
+        entries.put(key, entry);
+        evictIfNeeded(now);
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private CompletableFuture<V> share(Entry<V> entry, long now) {
+        entry.lastAccessNanos = now;
+        if (entry.future.isDone()) {
+            hits.increment();
+        } else {
+            coalesced.increment();
+        }
+        return entry.future.copy();
+    }
+
+    private void evictIfNeeded(long now) {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        // 一次清理到容量的 90%，避免在满容量附近每次插入都全量扫描
+        int target = maxEntries - Math.max(1, maxEntries / 10);
+        List<Map.Entry<K, Entry<V>>> candidates = new ArrayList<>();
+        for (Map.Entry<K, Entry<V>> e : entries.entrySet()) {
+            Entry<V> entry = e.getValue();
+            if (!entry.future.isDone()) {
+                continue;
+            }
+            if (!entry.usable(now)) {
+                if (entries.remove(e.getKey(), entry)) {
+                    evictions.increment();
+                }
+            } else {
+                candidates.add(e);
+            }
+        }
+        if (entries.size() <= target) {
+            return;
+        }
+        candidates.sort(Comparator.comparingLong(e -> e.getValue().lastAccessNanos));
+        for (Map.Entry<K, Entry<V>> e : candidates) {
+            if (entries.size() <= target) {
+                break;
+            }
+            if (entries.remove(e.getKey(), e.getValue())) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static Counter requestCounter(String metricPrefix, String name, String result, MeterRegistry meterRegistry) {
+        return Counter.builder(metricPrefix + ".requests")
+                .tag("cache", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static final class Entry<V> {
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private volatile long expiresAtNanos = Long.MAX_VALUE;
+        private volatile long lastAccessNanos;
+
+        private Entry(long createdAtNanos) {
+            this.lastAccessNanos = createdAtNanos;
+        }
+
+        /**
+         * 加载中的条目可以直接共享；已完成的条目在过期前可用。
+         */
+        private boolean usable(long now) {
+            return !future.isDone() || (!future.isCompletedExceptionally() && now - expiresAtNanos < 0);
+        }
+    }
+}
@@ -1,55 +1,44 @@
 package com.datamining.ssedemo.config;
 
+import com.datamining.ssedemo.repository.OffHeapChatMemoryRepository;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
-import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.memory.ChatMemoryRepository;
-import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
 import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
 @Configuration
 public class OpenAIConfiguration {
     /**
      * OpenAI client配置
+     * 会话记忆由工作流按 chatId 显式写入，这里不再挂 MessageChatMemoryAdvisor：
+     * 工作流的提示词可能被多个会话共享，不能带上某一个会话的历史。
      *
      * @param model
-     * @param chatMemory
      * @return
      */
     @Bean
-    public ChatClient chatClient(OpenAiChatModel model, ChatMemory chatMemory) {
+    public ChatClient chatClient(OpenAiChatModel model) {
         return ChatClient.builder(model)
                 .defaultSystem("You are a financial analyist")
-                .defaultAdvisors(new SimpleLoggerAdvisor()
-                        , MessageChatMemoryAdvisor.builder(chatMemory).build())
+                .defaultAdvisors(new SimpleLoggerAdvisor())
                 .build();
     }
 
     /**
-     * context存储，暂时先存在memory中，之后考虑存在redis或mongodb里
+     * context存储，会话编码后存放在堆外；chat.memory.store=file 时改用 {@link com.datamining.ssedemo.repository.FileChatMemoryRepository} 持久化到本地。
+     * ChatMemory 由 {@link com.datamining.ssedemo.repository.TieredChatMemory} 提供，活跃会话缓存在堆内
      *
+     * @param poolSize 堆外缓冲区空闲池上限
      * @return
      */
     @Bean
-    public ChatMemoryRepository chatMemoryRepository() {
-        return new InMemoryChatMemoryRepository();
-    }
-
-    /**
-     * context
-     *
-     * @param chatMemoryRepository
-     * @return
-     */
-    @Bean
-    public ChatMemory chatMemory(ChatMemoryRepository chatMemoryRepository) {
-        return MessageWindowChatMemory.builder()
-                .chatMemoryRepository(chatMemoryRepository)
-                .maxMessages(20)
-                .build();
+    @ConditionalOnProperty(name = "chat.memory.store", havingValue = "memory", matchIfMissing = true)
+    public ChatMemoryRepository chatMemoryRepository(@Value("${chat.memory.offheap.pool-size:16MB}") DataSize poolSize) {
+        return new OffHeapChatMemoryRepository(poolSize.toBytes());
     }
 }
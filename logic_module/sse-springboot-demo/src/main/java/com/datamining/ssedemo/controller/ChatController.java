@@ -6,6 +6,7 @@ import com.datamining.ssedemo.service.ChatWorkflowService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -32,7 +33,7 @@ public class ChatController {
             consumes = MediaType.APPLICATION_JSON_VALUE,
             produces = MediaType.TEXT_EVENT_STREAM_VALUE
     )
-    public Flux<String> chat(@RequestBody ChatReq req) {
+    public Flux<ServerSentEvent<String>> chat(@RequestBody ChatReq req) {
         // 保存id
         chatHistoryRepository.save(req.getChatId());
         String userText = req.getContent();
@@ -1,17 +1,22 @@
 package com.datamining.ssedemo.controller;
 
+import com.datamining.ssedemo.dto.ChatSummary;
 import com.datamining.ssedemo.dto.GetChatIdsResp;
 import com.datamining.ssedemo.dto.ContextResp;
 import com.datamining.ssedemo.dto.MessageVO;
 import com.datamining.ssedemo.dto.ResultVO;
 import com.datamining.ssedemo.repository.ChatHistoryRepository;
+import com.datamining.ssedemo.repository.ChatPage;
+import com.datamining.ssedemo.repository.TieredChatMemory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
@@ -25,26 +30,49 @@ public class ChatHistoryController {
     private final ChatMemory chatMemory;
 
     /**
-     * 获取聊天列表，刷新页面时调用
+     * 每页默认条数与上限
+     */
+    @Value("${chat.history.page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${chat.history.max-page-size:1000}")
+    private int maxPageSize;
+
+    /**
+     * 获取聊天列表，刷新页面时调用；按创建顺序分页，用上一页返回的 nextCursor 继续获取
+     * @param cursor
+     * @param limit
      * @return
      */
     @GetMapping("/getChatIds")
-    public ResultVO<GetChatIdsResp> getChatIds() {
-        List<String> chatIds = chatHistoryRepository.getChatIds();
+    public ResultVO<GetChatIdsResp> getChatIds(@RequestParam(value = "cursor", required = false) String cursor,
+                                               @RequestParam(value = "limit", required = false) Integer limit) {
+        int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+        ChatPage page;
+        try {
+            page = chatHistoryRepository.getChats(cursor, pageSize);
+        } catch (IllegalArgumentException ex) {
+            return ResultVO.fail(400, ex.getMessage());
+        }
         GetChatIdsResp resp = new GetChatIdsResp();
-        resp.setChatIds(chatIds);
+        resp.setChatIds(page.chats().stream().map(ChatSummary::getChatId).toList());
+        resp.setChats(page.chats());
+        resp.setNextCursor(page.nextCursor());
         return ResultVO.success(resp);
     }
 
     /**
-     * 获取该聊天上下文
+     * 获取该聊天上下文，滚动摘要只用于提示词，不返回给界面
      * @param chatId
      * @return
      */
     @GetMapping("get/{chatId}")
     public ResultVO<ContextResp> getChatHistory(@PathVariable("chatId") String chatId) {
         List<Message> messages = chatMemory.get(chatId);
-        List<MessageVO> list = messages.stream().map(MessageVO::new).toList();
+        List<MessageVO> list = messages.stream()
+                .filter(message -> !TieredChatMemory.isSummary(message))
+                .map(MessageVO::new)
+                .toList();
         ContextResp resp = new ContextResp();
         resp.setMessages(list);
         resp.setChatId(chatId);
@@ -6,6 +6,7 @@ import com.datamining.ssedemo.service.ChatWorkflowService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -30,7 +31,7 @@ public class WorkflowController {
     @PostMapping(value = "/chat",
             consumes = MediaType.APPLICATION_JSON_VALUE,
             produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> chat(@RequestBody ChatReq req) {
+    public Flux<ServerSentEvent<String>> chat(@RequestBody ChatReq req) {
         ensureChatId(req);
         chatHistoryRepository.save(req.getChatId());
         return chatWorkflowService.process(req);
@@ -0,0 +1,18 @@
+package com.datamining.ssedemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 会话元数据，时间均为毫秒时间戳。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSummary {
+    private String chatId;
+    private long createdAt;
+    private long lastActiveAt;
+    private long messageCount;
+}
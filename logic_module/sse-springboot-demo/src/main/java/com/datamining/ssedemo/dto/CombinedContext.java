@@ -10,4 +10,8 @@ public class CombinedContext {
     private ExtractResult extract;
     private List<NewsItem> news;
     private List<MarketSnapshot> markets;
+    /**
+     * 该会话此前的记忆窗口：可能以滚动摘要（role=system）开头，随后是最近几轮对话；新会话为空。
+     */
+    private List<MessageVO> history;
 }
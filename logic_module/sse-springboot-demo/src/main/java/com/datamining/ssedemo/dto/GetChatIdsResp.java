@@ -7,4 +7,12 @@ import java.util.List;
 @Data
 public class GetChatIdsResp {
     private List<String> chatIds;
+    /**
+     * 与 chatIds 一一对应的会话元数据。
+     */
+    private List<ChatSummary> chats;
+    /**
+     * 下一页的游标，已到末尾时为 null。
+     */
+    private String nextCursor;
 }
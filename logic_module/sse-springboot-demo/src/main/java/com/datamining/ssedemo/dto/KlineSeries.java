@@ -0,0 +1,307 @@
+package com.datamining.ssedemo.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 按列存储的 K 线序列：时间、开高低收与成交量各为一个基本类型数组，避免每根蜡烛一个对象。
+ * <p>
+ * 实例创建后不再修改。JSON 形态与逐条对象数组一致：
+ * {@code [{"startTime":..,"open":..,"high":..,"low":..,"close":..,"volume":..}, ...]}。
+ */
+@JsonSerialize(using = KlineSeries.Serializer.class)
+@JsonDeserialize(using = KlineSeries.Deserializer.class)
+public final class KlineSeries {
+
+    private static final KlineSeries EMPTY = new KlineSeries(new long[0], new double[0], new double[0],
+            new double[0], new double[0], new double[0], 0);
+
+    private final long[] startTimes;
+    private final double[] opens;
+    private final double[] highs;
+    private final double[] lows;
+    private final double[] closes;
+    private final double[] volumes;
+    private final int size;
+
+    private KlineSeries(long[] startTimes, double[] opens, double[] highs, double[] lows,
+                        double[] closes, double[] volumes, int size) {
+        this.startTimes = startTimes;
+        this.opens = opens;
+        this.highs = highs;
+        this.lows = lows;
+        this.closes = closes;
+        this.volumes = volumes;
+        this.size = size;
+    }
+
+    public static KlineSeries empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long startTime(int i) {
+        return startTimes[checkIndex(i)];
+    }
+
+    public double open(int i) {
+        return opens[checkIndex(i)];
+    }
+
+    public double high(int i) {
+        return highs[checkIndex(i)];
+    }
+
+    public double low(int i) {
+        return lows[checkIndex(i)];
+    }
+
+    public double close(int i) {
+        return closes[checkIndex(i)];
+    }
+
+    public double volume(int i) {
+        return volumes[checkIndex(i)];
+    }
+
+    private int checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("index " + i + ", size " + size);
+        }
+        return i;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof KlineSeries other) || size != other.size) {
+            return false;
+        }
+        return Arrays.equals(startTimes, 0, size, other.startTimes, 0, size)
+                && Arrays.equals(opens, 0, size, other.opens, 0, size)
+                && Arrays.equals(highs, 0, size, other.highs, 0, size)
+                && Arrays.equals(lows, 0, size, other.lows, 0, size)
+                && Arrays.equals(closes, 0, size, other.closes, 0, size)
+                && Arrays.equals(volumes, 0, size, other.volumes, 0, size);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = size;
+        for (int i = 0; i < size; i++) {
+            result = 31 * result + Long.hashCode(startTimes[i]);
+            result = 31 * result + Double.hashCode(closes[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "KlineSeries(size=" + size + ")";
+    }
+
+    /**
+     * 逐根追加蜡烛，容量不足时按列整体扩容。
+     */
+    public static final class Builder {
+        private long[] startTimes;
+        private double[] opens;
+        private double[] highs;
+        private double[] lows;
+        private double[] closes;
+        private double[] volumes;
+        private int size;
+
+        private Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 4);
+            startTimes = new long[capacity];
+            opens = new double[capacity];
+            highs = new double[capacity];
+            lows = new double[capacity];
+            closes = new double[capacity];
+            volumes = new double[capacity];
+        }
+
+        public Builder add(long startTime, double open, double high, double low, double close, double volume) {
+            if (size == startTimes.length) {
+                grow();
+            }
+            startTimes[size] = startTime;
+            opens[size] = open;
+            highs[size] = high;
+            lows[size] = low;
+            closes[size] = close;
+            volumes[size] = volume;
+            size++;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * 按开始时间升序排列。上游通常已按升序或降序返回，这两种情况为线性时间。
+         */
+        public Builder sortByStartTime() {
+            boolean ascending = true;
+            boolean descending = true;
+            for (int i = 1; i < size && (ascending || descending); i++) {
+                ascending &= startTimes[i - 1] <= startTimes[i];
+                descending &= startTimes[i - 1] >= startTimes[i];
+            }
+            if (ascending) {
+                return this;
+            }
+            if (descending) {
+                for (int i = 0, j = size - 1; i < j; i++, j--) {
+                    swap(i, j);
+                }
+                return this;
+            }
+            for (int i = 1; i < size; i++) {
+                for (int j = i; j > 0 && startTimes[j - 1] > startTimes[j]; j--) {
+                    swap(j - 1, j);
+                }
+            }
+            return this;
+        }
+
+        public KlineSeries build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            return new KlineSeries(
+                    Arrays.copyOf(startTimes, size),
+                    Arrays.copyOf(opens, size),
+                    Arrays.copyOf(highs, size),
+                    Arrays.copyOf(lows, size),
+                    Arrays.copyOf(closes, size),
+                    Arrays.copyOf(volumes, size),
+                    size);
+        }
+
+        private void grow() {
+            int capacity = startTimes.length * 2;
+            startTimes = Arrays.copyOf(startTimes, capacity);
+            opens = Arrays.copyOf(opens, capacity);
+            highs = Arrays.copyOf(highs, capacity);
+            lows = Arrays.copyOf(lows, capacity);
+            closes = Arrays.copyOf(closes, capacity);
+            volumes = Arrays.copyOf(volumes, capacity);
+        }
+
+        private void swap(int a, int b) {
+            long t = startTimes[a];
+            startTimes[a] = startTimes[b];
+            startTimes[b] = t;
+            swap(opens, a, b);
+            swap(highs, a, b);
+            swap(lows, a, b);
+            swap(closes, a, b);
+            swap(volumes, a, b);
+        }
+
+        private static void swap(double[] column, int a, int b) {
+            double t = column[a];
+            column[a] = column[b];
+            column[b] = t;
+        }
+    }
+
+    /**
+     * 直接从列数组写出 JSON，不经过逐条对象。
+     */
+    static final class Serializer extends StdSerializer<KlineSeries> {
+
+        Serializer() {
+            super(KlineSeries.class);
+        }
+
+        @Override
+        public void serialize(KlineSeries series, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartArray(series, series.size);
+            for (int i = 0; i < series.size; i++) {
+                gen.writeStartObject();
+                gen.writeNumberField("startTime", series.startTimes[i]);
+                gen.writeNumberField("open", series.opens[i]);
+                gen.writeNumberField("high", series.highs[i]);
+                gen.writeNumberField("low", series.lows[i]);
+                gen.writeNumberField("close", series.closes[i]);
+                gen.writeNumberField("volume", series.volumes[i]);
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+    }
+
+    static final class Deserializer extends StdDeserializer<KlineSeries> {
+
+        Deserializer() {
+            super(KlineSeries.class);
+        }
+
+        @Override
+        public KlineSeries deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (!p.isExpectedStartArrayToken()) {
+                return (KlineSeries) ctxt.handleUnexpectedToken(KlineSeries.class, p);
+            }
+            Builder builder = builder(16);
+            JsonToken token;
+            while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    return (KlineSeries) ctxt.handleUnexpectedToken(KlineSeries.class, p);
+                }
+                if (token != JsonToken.START_OBJECT) {
+                    // 非对象元素（null、嵌套数组等）整体跳过，解析器停在该元素末尾
+                    p.skipChildren();
+                    continue;
+                }
+                long startTime = 0;
+                double open = 0;
+                double high = 0;
+                double low = 0;
+                double close = 0;
+                double volume = 0;
+                String field;
+                while ((field = p.nextFieldName()) != null) {
+                    p.nextToken();
+                    switch (field) {
+                        case "startTime" -> startTime = p.getValueAsLong();
+                        case "open" -> open = p.getValueAsDouble();
+                        case "high" -> high = p.getValueAsDouble();
+                        case "low" -> low = p.getValueAsDouble();
+                        case "close" -> close = p.getValueAsDouble();
+                        case "volume" -> volume = p.getValueAsDouble();
+                        default -> p.skipChildren();
+                    }
+                }
+                builder.add(startTime, open, high, low, close, volume);
+            }
+            return builder.build();
+        }
+    }
+}
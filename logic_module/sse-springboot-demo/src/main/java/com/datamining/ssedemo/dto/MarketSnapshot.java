@@ -4,8 +4,6 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.List;
-
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -17,6 +15,7 @@ public class MarketSnapshot {
     private double volume24h;
     private double changePercent;
     private double rsi;
-    private List<KlinePoint> klines;
+    private KlineSeries klines;
     private OrderBook orderBook;
+    private TechnicalIndicators indicators;
 }
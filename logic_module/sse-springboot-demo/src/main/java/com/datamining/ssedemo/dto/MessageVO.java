@@ -12,7 +12,7 @@ import org.springframework.ai.chat.messages.Message;
 public class MessageVO {
 
     /**
-     * 角色 user/assistant
+     * 角色 user/assistant/system（system 为滚动摘要）
      */
     private String role;
 
@@ -26,6 +26,7 @@ public class MessageVO {
         switch (message.getMessageType()){
             case USER -> role = "user";
             case ASSISTANT ->  role = "assistant";
+            case SYSTEM -> role = "system";
             default -> role = "unknown";
         }
         this.content = message.getText();
@@ -0,0 +1,22 @@
+package com.datamining.ssedemo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 技术指标，数据不足以计算的字段为 null。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TechnicalIndicators {
+    private Double ema12;
+    private Double ema26;
+    private Double macd;
+    private Double macdSignal;
+    private Double macdHistogram;
+    private Double bollingerUpper;
+    private Double bollingerMiddle;
+    private Double bollingerLower;
+}
@@ -0,0 +1,158 @@
+package com.datamining.ssedemo.intent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 多模式字符串匹配自动机（Aho-Corasick），一次扫描找出文本中所有模式的出现位置，耗时与文本长度线性相关。
+ * <p>
+ * 构建完成后不可变、线程安全。每个节点的转移表编译为有序的 char 数组，查找时二分，不做装箱。
+ */
+public final class AhoCorasick<V> {
+
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] fail;
+    /**
+     * 每个节点可输出的模式编号，已经沿失败链合并。
+     */
+    private final int[][] outputs;
+    private final int[] patternLengths;
+    private final List<V> values;
+
+    private AhoCorasick(char[][] keys, int[][] targets, int[] fail, int[][] outputs, int[] patternLengths, List<V> values) {
+        this.keys = keys;
+        this.targets = targets;
+        this.fail = fail;
+        this.outputs = outputs;
+        this.patternLengths = patternLengths;
+        this.values = values;
+    }
+
+    public static <V> Builder<V> builder() {
+        return new Builder<>();
+    }
+
+    @FunctionalInterface
+    public interface MatchConsumer<V> {
+        /**
+         * @param start 匹配的起始下标（含）
+         * @param end   匹配的结束下标（不含）
+         */
+        void accept(int start, int end, V value);
+    }
+
+    public void search(CharSequence text, MatchConsumer<V> consumer) {
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next = transition(node, c);
+            while (next < 0 && node != 0) {
+                node = fail[node];
+                next = transition(node, c);
+            }
+            node = next < 0 ? 0 : next;
+            for (int pattern : outputs[node]) {
+                consumer.accept(i + 1 - patternLengths[pattern], i + 1, values.get(pattern));
+            }
+        }
+    }
+
+    private int transition(int node, char c) {
+        int index = Arrays.binarySearch(keys[node], c);
+        return index < 0 ? -1 : targets[node][index];
+    }
+
+    public static final class Builder<V> {
+        private final List<Map<Character, Integer>> children = new ArrayList<>();
+        private final List<List<Integer>> nodeOutputs = new ArrayList<>();
+        private final List<Integer> lengths = new ArrayList<>();
+        private final List<V> values = new ArrayList<>();
+
+        private Builder() {
+            newNode();
+        }
+
+        public Builder<V> add(String pattern, V value) {
+            if (pattern == null || pattern.isEmpty()) {
+                return this;
+            }
+            int node = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                Integer next = children.get(node).get(c);
+                if (next == null) {
+                    next = newNode();
+                    children.get(node).put(c, next);
+                }
+                node = next;
+            }
+            nodeOutputs.get(node).add(values.size());
+            lengths.add(pattern.length());
+            values.add(value);
+            return this;
+        }
+
+        public AhoCorasick<V> build() {
+            int size = children.size();
+            char[][] keys = new char[size][];
+            int[][] targets = new int[size][];
+            for (int node = 0; node < size; node++) {
+                Map<Character, Integer> edges = children.get(node);
+                keys[node] = new char[edges.size()];
+                targets[node] = new int[edges.size()];
+                int i = 0;
+                for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                    keys[node][i] = edge.getKey();
+                    targets[node][i] = edge.getValue();
+                    i++;
+                }
+            }
+
+            // 按广度优先计算失败链，并把失败节点的输出合并到当前节点
+            int[] fail = new int[size];
+            List<List<Integer>> merged = new ArrayList<>(size);
+            for (List<Integer> outputs : nodeOutputs) {
+                merged.add(new ArrayList<>(outputs));
+            }
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (int child : children.get(0).values()) {
+                fail[child] = 0;
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                for (Map.Entry<Character, Integer> edge : children.get(node).entrySet()) {
+                    char c = edge.getKey();
+                    int child = edge.getValue();
+                    int state = fail[node];
+                    while (state != 0 && !children.get(state).containsKey(c)) {
+                        state = fail[state];
+                    }
+                    Integer target = children.get(state).get(c);
+                    fail[child] = target == null || target == child ? 0 : target;
+                    merged.get(child).addAll(merged.get(fail[child]));
+                    queue.add(child);
+                }
+            }
+
+            int[][] outputs = new int[size][];
+            for (int node = 0; node < size; node++) {
+                outputs[node] = merged.get(node).stream().mapToInt(Integer::intValue).toArray();
+            }
+            int[] patternLengths = lengths.stream().mapToInt(Integer::intValue).toArray();
+            return new AhoCorasick<>(keys, targets, fail, outputs, patternLengths, List.copyOf(values));
+        }
+
+        private int newNode() {
+            children.add(new TreeMap<>());
+            nodeOutputs.add(new ArrayList<>());
+            return children.size() - 1;
+        }
+    }
+}
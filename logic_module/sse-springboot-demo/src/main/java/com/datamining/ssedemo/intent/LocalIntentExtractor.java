@@ -0,0 +1,238 @@
+package com.datamining.ssedemo.intent;
+
+import com.datamining.ssedemo.dto.ExtractResult;
+import com.datamining.ssedemo.service.TextNormalizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 基于词典和 {@link AhoCorasick} 的本地意图抽取，在微秒级内从用户输入中识别交易对与新闻类别。
+ * <p>
+ * 词典格式见 {@code intent/dictionary.txt}。结果附带置信度：命中无歧义的交易对别名为 1.0，
+ * 只命中有歧义的别名或只命中新闻类别为 0.5，什么都没命中为 0。置信度不够时由调用方回退到 LLM。
+ * <p>
+ * 去掉已命中的词条后若仍剩下像代码的英文词（例如 "BTC 和 AAPL" 中词典未收录的 AAPL），
+ * 或剩下词典中的虚词与常见提问措辞（filler 词条）之外的中文（例如 "比特币和黄金哪个更保值" 中的黄金），
+ * 说明输入里可能还有词典不认识的标的，置信度同样降为 0.5，避免本地结果悄悄漏掉它。
+ */
+@Slf4j
+@Component
+public class LocalIntentExtractor {
+
+    static final double CONFIDENT = 1.0;
+    static final double UNCERTAIN = 0.5;
+
+    /**
+     * 交易对中的计价货币，单独剩下时不算未识别的标的。
+     */
+    private static final Set<String> QUOTE_TOKENS = Set.of("usdt", "usdc", "usd", "busd");
+
+    private final AhoCorasick<Term> automaton;
+
+    public LocalIntentExtractor(@Value("${intent.local.dictionary:classpath:intent/dictionary.txt}") Resource dictionary) {
+        List<Term> terms = load(dictionary);
+        AhoCorasick.Builder<Term> builder = AhoCorasick.builder();
+        for (Term term : terms) {
+            builder.add(term.pattern(), term);
+        }
+        this.automaton = builder.build();
+        log.info("本地意图词典已加载，共 {} 个词条", terms.size());
+    }
+
+    public record Extraction(ExtractResult result, double confidence) {
+    }
+
+    public Extraction extract(String userText) {
+        String text = TextNormalizer.normalize(userText);
+        if (text.isEmpty()) {
+            return new Extraction(null, 0);
+        }
+        Set<String> categories = new LinkedHashSet<>();
+        Set<String> products = new LinkedHashSet<>();
+        Set<String> aliases = new LinkedHashSet<>();
+        boolean[] unambiguousProduct = new boolean[1];
+        boolean[] covered = new boolean[text.length()];
+        automaton.search(text, (start, end, term) -> {
+            if (term.latin() && !atWordBoundary(text, start, end)) {
+                return;
+            }
+            for (int i = start; i < end; i++) {
+                covered[i] = true;
+            }
+            if (term.filler()) {
+                return;
+            }
+            aliases.add(term.pattern());
+            if (term.product() != null) {
+                products.add(term.product());
+                unambiguousProduct[0] |= !term.ambiguous();
+            }
+            categories.add(term.category());
+        });
+        if (aliases.isEmpty()) {
+            return new Extraction(null, 0);
+        }
+        double confidence = unambiguousProduct[0] && !hasUnmatchedTicker(text, covered) && !hasUnmatchedCjk(text, covered)
+                ? CONFIDENT : UNCERTAIN;
+        ExtractResult result = new ExtractResult(
+                new ArrayList<>(categories),
+                new ArrayList<>(products),
+                "本地词典命中：" + String.join("、", aliases));
+        return new Extraction(result, confidence);
+    }
+
+    /**
+     * 返回规范化后的输入，并去掉其中的交易对别名，只保留提问本身的措辞。
+     * 例如 "BTC能抄底吗" 与 "比特币能抄底吗" 都得到 "能抄底吗"。
+     */
+    public String stripProducts(String userText) {
+        String text = TextNormalizer.normalize(userText);
+        if (text.isEmpty()) {
+            return text;
+        }
+        boolean[] covered = new boolean[text.length()];
+        boolean[] any = new boolean[1];
+        automaton.search(text, (start, end, term) -> {
+            if (term.product() == null || (term.latin() && !atWordBoundary(text, start, end))) {
+                return;
+            }
+            for (int i = start; i < end; i++) {
+                covered[i] = true;
+            }
+            any[0] = true;
+        });
+        if (!any[0]) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            if (!covered[i]) {
+                builder.append(text.charAt(i));
+            }
+        }
+        return builder.toString().strip();
+    }
+
+    /**
+     * 是否存在未被任何词条覆盖、且至少含两个字母的英文或数字串（计价货币除外）。
+     */
+    private static boolean hasUnmatchedTicker(String text, boolean[] covered) {
+        int i = 0;
+        while (i < text.length()) {
+            if (!isLatinOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            boolean uncovered = false;
+            int letters = 0;
+            while (i < text.length() && isLatinOrDigit(text.charAt(i))) {
+                uncovered |= !covered[i];
+                if (text.charAt(i) >= 'a') {
+                    letters++;
+                }
+                i++;
+            }
+            if (uncovered && letters >= 2 && !QUOTE_TOKENS.contains(text.substring(start, i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否存在未被任何词条（包括 filler）覆盖的中日韩字符。
+     */
+    private static boolean hasUnmatchedCjk(String text, boolean[] covered) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!covered[i] && Character.UnicodeScript.of(text.charAt(i)) == Character.UnicodeScript.HAN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 英文词条两侧不能紧挨字母或数字，中文字符视为边界。
+     */
+    private static boolean atWordBoundary(String text, int start, int end) {
+        return (start == 0 || !isLatinOrDigit(text.charAt(start - 1)))
+                && (end == text.length() || !isLatinOrDigit(text.charAt(end)));
+    }
+
+    private static boolean isLatinOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+    }
+
+    private static List<Term> load(Resource dictionary) {
+        List<Term> terms = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(dictionary.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\|");
+                boolean product = "product".equals(fields[0]) && fields.length == 4;
+                boolean category = "category".equals(fields[0]) && fields.length == 3;
+                boolean filler = "filler".equals(fields[0]) && fields.length == 2;
+                if (!product && !category && !filler) {
+                    throw new IllegalStateException("意图词典第 " + lineNumber + " 行格式错误: " + line);
+                }
+                String symbol = product ? fields[1].strip() : null;
+                String topic = filler ? null : (product ? fields[2] : fields[1]).strip();
+                for (String alias : fields[fields.length - 1].split(",")) {
+                    alias = alias.strip();
+                    boolean ambiguous = alias.endsWith("?");
+                    String pattern = TextNormalizer.normalize(ambiguous ? alias.substring(0, alias.length() - 1) : alias);
+                    if (pattern.isEmpty() || !seen.add(pattern + '|' + symbol + '|' + topic)) {
+                        continue;
+                    }
+                    terms.add(new Term(pattern, symbol, topic, ambiguous, isLatin(pattern)));
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("读取意图词典失败: " + dictionary, ex);
+        }
+        return terms;
+    }
+
+    private static boolean isLatin(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (!isLatinOrDigit(c) && c != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param product  交易对；纯新闻类别词条与 filler 词条为 null
+     * @param category 新闻类别；filler 词条为 null
+     */
+    private record Term(String pattern, String product, String category, boolean ambiguous, boolean latin) {
+
+        boolean filler() {
+            return category == null;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.datamining.ssedemo.market;
+
+import com.datamining.ssedemo.dto.TechnicalIndicators;
+
+/**
+ * 单个标的、单个周期的流式指标状态：Wilder RSI(14)、EMA(12/26)、MACD(12,26,9) 与布林带(20, 2σ)。
+ * <p>
+ * {@link #commit(double)} 在一根蜡烛收盘时以 O(1) 更新状态；{@link #preview(double)} 把尚未收盘的蜡烛
+ * 当作下一根收盘价计算当前指标，不修改状态。非线程安全，由 {@link SymbolSeries} 负责同步。
+ */
+public class IndicatorState {
+
+    public static final double NEUTRAL_RSI = 50.0;
+
+    /**
+     * 所有指标都给出数值所需的已收盘蜡烛数：EMA(26) 稳定后 MACD 信号线还需 9 根。
+     */
+    public static final int WARMUP_BARS = 26 + 9;
+
+    private static final int RSI_PERIOD = 14;
+    private static final int BOLLINGER_PERIOD = 20;
+    private static final double BOLLINGER_WIDTH = 2.0;
+
+    private final WilderRsi rsi = new WilderRsi(RSI_PERIOD);
+    private final Ema fast = new Ema(12);
+    private final Ema slow = new Ema(26);
+    private final Ema signal = new Ema(9);
+    private final RollingStats bollinger = new RollingStats(BOLLINGER_PERIOD);
+
+    public void commit(double close) {
+        double macd = fast.peek(close) - slow.peek(close);
+        rsi.update(close);
+        fast.update(close);
+        slow.update(close);
+        if (!Double.isNaN(macd)) {
+            signal.update(macd);
+        }
+        bollinger.update(close);
+    }
+
+    /**
+     * 以 formingClose 作为最新收盘价时的 RSI，数据不足时返回 {@link #NEUTRAL_RSI}。
+     */
+    public double previewRsi(double formingClose) {
+        double value = rsi.peek(formingClose);
+        return Double.isNaN(value) ? NEUTRAL_RSI : value;
+    }
+
+    public TechnicalIndicators preview(double formingClose) {
+        double ema12 = fast.peek(formingClose);
+        double ema26 = slow.peek(formingClose);
+        double macd = ema12 - ema26;
+        double macdSignal = Double.isNaN(macd) ? Double.NaN : signal.peek(macd);
+        double mean = bollinger.peekMean(formingClose);
+        double deviation = bollinger.peekStdDev(formingClose);
+        return new TechnicalIndicators(
+                nullable(ema12),
+                nullable(ema26),
+                nullable(macd),
+                nullable(macdSignal),
+                nullable(macd - macdSignal),
+                nullable(mean + BOLLINGER_WIDTH * deviation),
+                nullable(mean),
+                nullable(mean - BOLLINGER_WIDTH * deviation)
+        );
+    }
+
+    private static Double nullable(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    /**
+     * 前 period 个值取简单平均作为种子，之后按 2/(period+1) 指数平滑；未就绪时返回 NaN。
+     */
+    private static final class Ema {
+        private final int period;
+        private final double alpha;
+        private int count;
+        private double seedSum;
+        private double value = Double.NaN;
+
+        private Ema(int period) {
+            this.period = period;
+            this.alpha = 2.0 / (period + 1);
+        }
+
+        private double peek(double x) {
+            if (count + 1 < period) {
+                return Double.NaN;
+            }
+            if (count + 1 == period) {
+                return (seedSum + x) / period;
+            }
+            return value + alpha * (x - value);
+        }
+
+        private void update(double x) {
+            double next = peek(x);
+            if (count < period) {
+                seedSum += x;
+                count++;
+            } else {
+                count = period;
+            }
+            value = next;
+        }
+    }
+
+    /**
+     * Wilder 平滑的 RSI：前 period 个涨跌幅取简单平均，之后 avg = (avg * (period - 1) + x) / period。
+     */
+    private static final class WilderRsi {
+        private final int period;
+        private boolean hasPrevious;
+        private double previousClose;
+        private int changes;
+        private double gainSum;
+        private double lossSum;
+        private double avgGain;
+        private double avgLoss;
+
+        private WilderRsi(int period) {
+            this.period = period;
+        }
+
+        private double peek(double close) {
+            if (!hasPrevious) {
+                return Double.NaN;
+            }
+            double change = close - previousClose;
+            double gain = Math.max(change, 0);
+            double loss = Math.max(-change, 0);
+            int n = changes + 1;
+            if (n < period) {
+                return Double.NaN;
+            }
+            if (n == period) {
+                return toRsi((gainSum + gain) / period, (lossSum + loss) / period);
+            }
+            return toRsi((avgGain * (period - 1) + gain) / period, (avgLoss * (period - 1) + loss) / period);
+        }
+
+        private void update(double close) {
+            if (hasPrevious) {
+                double change = close - previousClose;
+                double gain = Math.max(change, 0);
+                double loss = Math.max(-change, 0);
+                int n = changes + 1;
+                if (n < period) {
+                    gainSum += gain;
+                    lossSum += loss;
+                } else if (n == period) {
+                    avgGain = (gainSum + gain) / period;
+                    avgLoss = (lossSum + loss) / period;
+                } else {
+                    avgGain = (avgGain * (period - 1) + gain) / period;
+                    avgLoss = (avgLoss * (period - 1) + loss) / period;
+                }
+                if (changes < period) {
+                    changes++;
+                }
+            }
+            previousClose = close;
+            hasPrevious = true;
+        }
+
+        private static double toRsi(double avgGain, double avgLoss) {
+            if (avgLoss == 0) {
+                return 100.0;
+            }
+            double rs = avgGain / avgLoss;
+            return Math.max(0, Math.min(100, 100 - (100 / (1 + rs))));
+        }
+    }
+
+    /**
+     * 固定窗口的滚动均值与总体标准差，维护累计和与平方和；每滚动一整轮重新精确求和一次，抵消浮点误差累积。
+     */
+    private static final class RollingStats {
+        private final double[] window;
+        private int next;
+        private int count;
+        private double sum;
+        private double sumSquares;
+
+        private RollingStats(int period) {
+            this.window = new double[period];
+        }
+
+        private double peekMean(double x) {
+            if (count + 1 < window.length) {
+                return Double.NaN;
+            }
+            return (sum + x - evicted()) / window.length;
+        }
+
+        private double peekStdDev(double x) {
+            if (count + 1 < window.length) {
+                return Double.NaN;
+            }
+            double removed = evicted();
+            double mean = (sum + x - removed) / window.length;
+            double variance = (sumSquares + x * x - removed * removed) / window.length - mean * mean;
+            return Math.sqrt(Math.max(0, variance));
+        }
+
+        private void update(double x) {
+            double removed = evicted();
+            sum += x - removed;
+            sumSquares += x * x - removed * removed;
+            window[next] = x;
+            next = (next + 1) % window.length;
+            if (count < window.length) {
+                count++;
+            }
+            if (next == 0) {
+                recompute();
+            }
+        }
+
+        private double evicted() {
+            return count < window.length ? 0.0 : window[next];
+        }
+
+        private void recompute() {
+            double s = 0;
+            double sq = 0;
+            for (int i = 0; i < count; i++) {
+                s += window[i];
+                sq += window[i] * window[i];
+            }
+            sum = s;
+            sumSquares = sq;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.datamining.ssedemo.market;
+
+import com.datamining.ssedemo.dto.KlineSeries;
+
+/**
+ * 固定容量的 K 线环形缓冲区，按列存放在平行的基本类型数组中，按 startTime 升序排列。
+ * <p>
+ * 新蜡烛追加到尾部，容量满时覆盖最旧的一根；与最后一根 startTime 相同的数据视为对未收盘蜡烛的修正。
+ * 所有方法都在实例上同步，需要组合多个操作时调用方可以对实例加锁。
+ */
+public class KlineRingBuffer {
+
+    private final int capacity;
+    private final long[] startTimes;
+    private final double[] opens;
+    private final double[] highs;
+    private final double[] lows;
+    private final double[] closes;
+    private final double[] volumes;
+    private int head;
+    private int size;
+
+    public KlineRingBuffer(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.startTimes = new long[this.capacity];
+        this.opens = new double[this.capacity];
+        this.highs = new double[this.capacity];
+        this.lows = new double[this.capacity];
+        this.closes = new double[this.capacity];
+        this.volumes = new double[this.capacity];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 最后一根（可能尚未收盘）蜡烛的开始时间，缓冲区为空时返回 -1。
+     */
+    public synchronized long lastStartTime() {
+        return size == 0 ? -1L : startTimes[slot(size - 1)];
+    }
+
+    /**
+     * 最后一根蜡烛的收盘价，缓冲区为空时返回 NaN。
+     */
+    public synchronized double lastClose() {
+        return size == 0 ? Double.NaN : closes[slot(size - 1)];
+    }
+
+    /**
+     * 合并一根蜡烛：比最后一根新则追加，相同则覆盖，更旧则忽略。
+     *
+     * @return 是否写入了缓冲区
+     */
+    public synchronized boolean merge(long startTime, double open, double high, double low, double close, double volume) {
+        int index;
+        if (size > 0) {
+            int lastIndex = slot(size - 1);
+            long last = startTimes[lastIndex];
+            if (startTime < last) {
+                return false;
+            }
+            if (startTime == last) {
+                write(lastIndex, startTime, open, high, low, close, volume);
+                return true;
+            }
+        }
+        if (size < capacity) {
+            index = slot(size);
+            size++;
+        } else {
+            index = head;
+            head = (head + 1) % capacity;
+        }
+        write(index, startTime, open, high, low, close, volume);
+        return true;
+    }
+
+    /**
+     * 丢弃开始时间早于 minStartTime 的蜡烛。
+     */
+    public synchronized void evictBefore(long minStartTime) {
+        while (size > 0 && startTimes[head] < minStartTime) {
+            head = (head + 1) % capacity;
+            size--;
+        }
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public synchronized KlineSeries toSeries() {
+        KlineSeries.Builder builder = KlineSeries.builder(size);
+        for (int i = 0; i < size; i++) {
+            int index = slot(i);
+            builder.add(startTimes[index], opens[index], highs[index], lows[index], closes[index], volumes[index]);
+        }
+        return builder.build();
+    }
+
+    private int slot(int offset) {
+        return (head + offset) % capacity;
+    }
+
+    private void write(int index, long startTime, double open, double high, double low, double close, double volume) {
+        startTimes[index] = startTime;
+        opens[index] = open;
+        highs[index] = high;
+        lows[index] = low;
+        closes[index] = close;
+        volumes[index] = volume;
+    }
+}
@@ -0,0 +1,116 @@
+package com.datamining.ssedemo.market;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按标的与周期保存最近的 K 线与指标状态，后续请求只需向行情服务拉取上次之后的新蜡烛。
+ * <p>
+ * 标的来自 LLM 或用户输入，可能无效，因此只在行情服务成功返回蜡烛后才创建缓冲区；
+ * 闲置超过 idle-timeout 的缓冲区定期清除，总数超过 max-symbols 时淘汰最久未访问的一个。
+ */
+@Slf4j
+@Component
+public class KlineStore {
+
+    private final Map<String, SymbolSeries> series = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final int maxSymbols;
+    private final long idleTimeoutMillis;
+
+    public KlineStore(MeterRegistry meterRegistry,
+                      @Value("${market.kline-store.capacity:120}") int capacity,
+                      @Value("${market.kline-store.max-symbols:2000}") int maxSymbols,
+                      @Value("${market.kline-store.idle-timeout:PT24H}") Duration idleTimeout) {
+        this.capacity = capacity;
+        this.maxSymbols = Math.max(1, maxSymbols);
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        Gauge.builder("market.kline-store.series", series, Map::size)
+                .description("保存了 K 线缓冲区的标的数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 已有的缓冲区，不存在时返回 null，不会创建。
+     */
+    public SymbolSeries find(String symbol, String interval) {
+        SymbolSeries existing = series.get(symbol + '|' + interval);
+        if (existing != null) {
+            existing.touch();
+        }
+        return existing;
+    }
+
+    /**
+     * 取得或创建缓冲区；只应在行情服务成功返回该标的的蜡烛后调用。
+     */
+    public SymbolSeries series(String symbol, String interval, Duration intervalDuration) {
+        SymbolSeries existing = find(symbol, interval);
+        if (existing != null) {
+            return existing;
+        }
+        if (series.size() >= maxSymbols) {
+            evictLeastRecentlyUsed();
+        }
+        SymbolSeries created = series.computeIfAbsent(symbol + '|' + interval, key -> new SymbolSeries(capacity, intervalDuration));
+        created.touch();
+        return created;
+    }
+
+    @Scheduled(fixedDelayString = "${market.kline-store.sweep-interval:PT10M}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        int before = series.size();
+        series.values().removeIf(s -> s.lastAccessMillis() < cutoff);
+        int evicted = before - series.size();
+        if (evicted > 0) {
+            log.debug("清除 {} 个闲置的 K 线缓冲区", evicted);
+        }
+    }
+
+    private void evictLeastRecentlyUsed() {
+        String eldest = null;
+        long eldestAccess = Long.MAX_VALUE;
+        for (Map.Entry<String, SymbolSeries> e : series.entrySet()) {
+            long access = e.getValue().lastAccessMillis();
+            if (access < eldestAccess) {
+                eldestAccess = access;
+                eldest = e.getKey();
+            }
+        }
+        if (eldest != null) {
+            series.remove(eldest);
+        }
+    }
+
+    /**
+     * 计算本次应从何时开始拉取：已有数据覆盖到窗口内时，从最后一根（可能未收盘）蜡烛开始，
+     * 以便同时修正它；否则从窗口开始前 {@link IndicatorState#WARMUP_BARS} 根蜡烛拉起，
+     * 让指标在窗口内第一根蜡烛时就已预热（窗口外的蜡烛合并后即被淘汰，只留在指标状态里）。
+     * series 为 null 表示还没有缓冲区。
+     */
+    public static Instant fetchFrom(SymbolSeries series, Instant windowStart, Duration interval) {
+        long last = series == null ? -1L : series.lastStartTime();
+        if (last >= windowStart.toEpochMilli()) {
+            return Instant.ofEpochMilli(last);
+        }
+        return windowStart.minus(interval.multipliedBy(IndicatorState.WARMUP_BARS));
+    }
+
+    /**
+     * 从 from 到 to 之间预计返回的蜡烛数量，多留一根余量，且不超过 maxBars。
+     */
+    public static int expectedBars(Instant from, Instant to, Duration interval, int maxBars) {
+        long bars = Duration.between(from, to).toMillis() / interval.toMillis() + 2;
+        return (int) Math.max(1, Math.min(maxBars, bars));
+    }
+}
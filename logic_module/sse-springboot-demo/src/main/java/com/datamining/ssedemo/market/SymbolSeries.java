@@ -0,0 +1,93 @@
+package com.datamining.ssedemo.market;
+
+import com.datamining.ssedemo.dto.KlineSeries;
+import com.datamining.ssedemo.dto.TechnicalIndicators;
+
+import java.time.Duration;
+
+/**
+ * 单个标的、单个周期的 K 线缓冲区及其流式指标状态。
+ * <p>
+ * 缓冲区中的最后一根蜡烛视为尚未收盘；当更新的蜡烛到达时，上一根以最终收盘价提交到指标状态，
+ * 因此每根蜡烛只参与一次 O(1) 的指标更新。
+ * <p>
+ * 新蜡烛与最后一根之间相隔超过一个周期时，说明中间缺了数据，旧的指标状态不能延续到不相邻的蜡烛上，
+ * 此时清空缓冲区与指标状态，从新蜡烛重新开始累积。最后一根蜡烛的时间与收盘价独立于缓冲区记录，
+ * 缓冲区被 {@link #evictBefore} 清空后仍能判断下一根是否相邻。
+ */
+public class SymbolSeries {
+
+    private final KlineRingBuffer buffer;
+    private final long intervalMillis;
+    private IndicatorState indicators = new IndicatorState();
+    /**
+     * 指标状态对应的最后一根（尚未提交的）蜡烛，没有时为 -1。
+     */
+    private long lastStartTime = -1;
+    private double lastClose;
+    private volatile long lastAccessMillis = System.currentTimeMillis();
+
+    public SymbolSeries(int capacity, Duration interval) {
+        this.buffer = new KlineRingBuffer(capacity);
+        this.intervalMillis = interval.toMillis();
+    }
+
+    /**
+     * 记录一次访问，供 {@link KlineStore} 清除闲置的缓冲区。
+     */
+    public void touch() {
+        lastAccessMillis = System.currentTimeMillis();
+    }
+
+    public long lastAccessMillis() {
+        return lastAccessMillis;
+    }
+
+    public synchronized long lastStartTime() {
+        return buffer.lastStartTime();
+    }
+
+    /**
+     * 按时间顺序合并一批蜡烛。
+     */
+    public synchronized void mergeAll(KlineSeries candles) {
+        for (int i = 0; i < candles.size(); i++) {
+            merge(candles.startTime(i), candles.open(i), candles.high(i), candles.low(i), candles.close(i), candles.volume(i));
+        }
+    }
+
+    public synchronized void merge(long startTime, double open, double high, double low, double close, double volume) {
+        if (lastStartTime >= 0 && startTime < lastStartTime) {
+            return;
+        }
+        if (lastStartTime >= 0 && startTime > lastStartTime) {
+            if (startTime - lastStartTime > intervalMillis) {
+                buffer.clear();
+                indicators = new IndicatorState();
+            } else {
+                indicators.commit(lastClose);
+            }
+        }
+        buffer.merge(startTime, open, high, low, close, volume);
+        lastStartTime = startTime;
+        lastClose = close;
+    }
+
+    public synchronized void evictBefore(long minStartTime) {
+        buffer.evictBefore(minStartTime);
+    }
+
+    /**
+     * 当前窗口内的 K 线，以及把最后一根蜡烛当作最新收盘价的指标；缓冲区为空时返回 null。
+     */
+    public synchronized View view() {
+        if (buffer.size() == 0) {
+            return null;
+        }
+        double formingClose = buffer.lastClose();
+        return new View(buffer.toSeries(), indicators.previewRsi(formingClose), indicators.preview(formingClose));
+    }
+
+    public record View(KlineSeries klines, double rsi, TechnicalIndicators indicators) {
+    }
+}
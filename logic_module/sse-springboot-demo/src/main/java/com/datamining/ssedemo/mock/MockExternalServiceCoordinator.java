@@ -1,11 +1,12 @@
 package com.datamining.ssedemo.mock;
 
 import com.datamining.ssedemo.dto.ExtractResult;
-import com.datamining.ssedemo.dto.KlinePoint;
+import com.datamining.ssedemo.dto.KlineSeries;
 import com.datamining.ssedemo.dto.MarketSnapshot;
 import com.datamining.ssedemo.dto.NewsItem;
 import com.datamining.ssedemo.dto.OrderBook;
 import com.datamining.ssedemo.dto.OrderBookLevel;
+import com.datamining.ssedemo.dto.TechnicalIndicators;
 import com.datamining.ssedemo.service.ExternalServiceCoordinator;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
@@ -33,11 +34,11 @@ public class MockExternalServiceCoordinator implements ExternalServiceCoordinato
                 : extract.getProducts();
         return products.stream()
                 .map(sym -> {
-                    List<KlinePoint> klines = List.of(
-                            new KlinePoint(System.currentTimeMillis() - 3600_000L, 100.0, 102.0, 99.0, 101.5, 1200),
-                            new KlinePoint(System.currentTimeMillis() - 1800_000L, 101.5, 103.0, 100.5, 102.2, 980),
-                            new KlinePoint(System.currentTimeMillis() - 600_000L, 102.2, 104.0, 101.0, 103.8, 1500)
-                    );
+                    KlineSeries klines = KlineSeries.builder(3)
+                            .add(System.currentTimeMillis() - 3600_000L, 100.0, 102.0, 99.0, 101.5, 1200)
+                            .add(System.currentTimeMillis() - 1800_000L, 101.5, 103.0, 100.5, 102.2, 980)
+                            .add(System.currentTimeMillis() - 600_000L, 102.2, 104.0, 101.0, 103.8, 1500)
+                            .build();
                     OrderBook orderBook = new OrderBook(
                             List.of(new OrderBookLevel(103.5, 12), new OrderBookLevel(103.0, 18), new OrderBookLevel(102.5, 25)),
                             List.of(new OrderBookLevel(104.2, 10), new OrderBookLevel(104.8, 16), new OrderBookLevel(105.3, 20))
@@ -51,7 +52,8 @@ public class MockExternalServiceCoordinator implements ExternalServiceCoordinato
                             1.25,
                             55.6,
                             klines,
-                            orderBook
+                            orderBook,
+                            new TechnicalIndicators(103.2, 102.6, 0.6, 0.45, 0.15, 106.9, 102.4, 97.9)
                     );
                 })
                 .toList();
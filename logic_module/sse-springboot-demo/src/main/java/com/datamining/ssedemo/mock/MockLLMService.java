@@ -33,7 +33,7 @@ public class MockLLMService implements LLMService {
         ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
         for (int i = 1; i <= 5; i++) {
             int k = i;
-            scheduler.schedule(() -> onChunk.accept("{\"chunk\":\"part-\" + k + \"\"}"), i * 400L, TimeUnit.MILLISECONDS);
+            scheduler.schedule(() -> onChunk.accept("part-" + k + " "), i * 400L, TimeUnit.MILLISECONDS);
         }
         scheduler.schedule(onDone, 2600L, TimeUnit.MILLISECONDS);
         scheduler.shutdown();
@@ -1,10 +1,13 @@
 package com.datamining.ssedemo.repository;
 
+import com.datamining.ssedemo.dto.ChatSummary;
+
 import java.util.List;
+import java.util.Optional;
 
 public interface ChatHistoryRepository {
     /**
-     * 保存会话记录
+     * 保存会话记录：首次出现时创建，之后每次调用记为一条新消息并刷新最后活跃时间
      * @param chatId
      */
     void save(String chatId);
@@ -14,4 +17,19 @@ public interface ChatHistoryRepository {
      * @return
      */
     List<String> getChatIds();
+
+    /**
+     * 按创建顺序分页查询会话列表
+     * @param cursor 上一页返回的 nextCursor，为空时从头开始
+     * @param limit 本页最多返回的条数
+     * @return
+     */
+    ChatPage getChats(String cursor, int limit);
+
+    /**
+     * 查询单个会话的元数据
+     * @param chatId
+     * @return
+     */
+    Optional<ChatSummary> find(String chatId);
 }
@@ -0,0 +1,138 @@
+package com.datamining.ssedemo.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * 会话日志的一个定长段文件。
+ * <p>
+ * 文件按容量整体映射到内存：写入走 FileChannel 并由写线程批量 fsync，读取直接访问映射缓冲区，
+ * 不把整个段读入堆内存。未写到的尾部保持为 0，恢复时读到长度为 0 或校验失败的记录即视为数据结尾。
+ * <p>
+ * 记录格式：int 正文长度 | int 正文 CRC32 | 正文。正文：byte 操作 | short 会话 id 长度 | 会话 id（UTF-8）| long 序号 |
+ * APPEND 记录额外带 byte 消息类型 | 消息文本（UTF-8，直到正文结束）。
+ */
+final class ChatLogSegment {
+
+    static final int RECORD_HEADER_BYTES = 8;
+
+    private final long id;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+    private final int capacity;
+    private final AtomicLong liveBytes = new AtomicLong();
+    private volatile int writePosition;
+
+    private ChatLogSegment(long id, Path path, FileChannel channel, MappedByteBuffer mapped, int capacity) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.mapped = mapped;
+        this.capacity = capacity;
+    }
+
+    static ChatLogSegment open(Path path, long id, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int size = (int) Math.max(capacity, channel.size());
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new ChatLogSegment(id, path, channel, mapped, size);
+    }
+
+    long id() {
+        return id;
+    }
+
+    int writePosition() {
+        return writePosition;
+    }
+
+    void writePosition(int position) {
+        this.writePosition = position;
+    }
+
+    int remaining() {
+        return capacity - writePosition;
+    }
+
+    AtomicLong liveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * 写入一条已编码的记录，返回记录的起始位置；调用方保证空间足够，且只有写线程调用。
+     */
+    int append(ByteBuffer record) throws IOException {
+        int position = writePosition;
+        int length = record.remaining();
+        while (record.hasRemaining()) {
+            channel.write(record, position + (length - record.remaining()));
+        }
+        writePosition = position + length;
+        return position;
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * 读取 position 处记录的正文视图（不复制），记录不完整或校验失败时返回 null。
+     */
+    ByteBuffer readBody(int position) {
+        if (position + RECORD_HEADER_BYTES > capacity) {
+            return null;
+        }
+        ByteBuffer view = mapped.duplicate();
+        int length = view.getInt(position);
+        int crc = view.getInt(position + 4);
+        int start = position + RECORD_HEADER_BYTES;
+        if (length <= 0 || start + length > capacity) {
+            return null;
+        }
+        ByteBuffer body = view.slice(start, length);
+        CRC32 checksum = new CRC32();
+        checksum.update(body.duplicate());
+        return (int) checksum.getValue() == crc ? body : null;
+    }
+
+    /**
+     * 从映射缓冲区中复制一段字节，只复制这段内容本身。
+     */
+    byte[] readBytes(int offset, int length) {
+        byte[] bytes = new byte[length];
+        mapped.duplicate().get(offset, bytes);
+        return bytes;
+    }
+
+    /**
+     * 段内 offset 处的内容是否与 bytes 逐字节相同，直接在映射缓冲区上比较，不复制。
+     */
+    boolean contentEquals(int offset, byte[] bytes) {
+        return mapped.slice(offset, bytes.length).equals(ByteBuffer.wrap(bytes));
+    }
+
+    String readText(int offset, int length) {
+        return new String(readBytes(offset, length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 关闭文件通道并删除文件。映射缓冲区不主动释放，可能仍在读取的线程继续有效，由 GC 回收。
+     */
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+}
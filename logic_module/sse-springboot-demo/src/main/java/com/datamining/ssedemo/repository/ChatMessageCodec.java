@@ -0,0 +1,110 @@
+package com.datamining.ssedemo.repository;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 会话消息的紧凑二进制编码，供文件与堆外两种存储共用。
+ * <p>
+ * 只保存消息类型与文本：一个类型字节、变长整数表示的 UTF-8 长度、UTF-8 正文；工具调用相关的消息不在工作流中使用，不做保存。
+ */
+final class ChatMessageCodec {
+
+    static final byte TYPE_USER = 'U';
+    static final byte TYPE_ASSISTANT = 'A';
+    static final byte TYPE_SYSTEM = 'S';
+
+    private ChatMessageCodec() {
+    }
+
+    /**
+     * 消息对应的类型字节，不支持保存的消息返回 0。
+     */
+    static byte typeOf(Message message) {
+        MessageType messageType = message.getMessageType();
+        if (messageType == MessageType.USER) {
+            return TYPE_USER;
+        }
+        if (messageType == MessageType.ASSISTANT) {
+            return TYPE_ASSISTANT;
+        }
+        if (messageType == MessageType.SYSTEM) {
+            return TYPE_SYSTEM;
+        }
+        return 0;
+    }
+
+    static byte[] textOf(Message message) {
+        String text = message.getText();
+        return text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static Message toMessage(byte type, String text) {
+        return switch (type) {
+            case TYPE_ASSISTANT -> new AssistantMessage(text);
+            case TYPE_SYSTEM -> new SystemMessage(text);
+            default -> new UserMessage(text);
+        };
+    }
+
+    /**
+     * 把一组消息编码为字节数组，由调用方拷贝进自己管理的缓冲区。
+     */
+    static byte[] encode(List<Message> messages) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * messages.size());
+        for (Message message : messages) {
+            byte type = typeOf(message);
+            if (type == 0) {
+                continue;
+            }
+            byte[] text = textOf(message);
+            out.write(type);
+            writeVarInt(out, text.length);
+            out.write(text, 0, text.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 解码 encoded 中 position 到 limit 之间的消息，不改变 encoded 的位置。
+     */
+    static List<Message> decode(ByteBuffer encoded) {
+        ByteBuffer in = encoded.duplicate();
+        List<Message> messages = new ArrayList<>();
+        while (in.hasRemaining()) {
+            byte type = in.get();
+            byte[] text = new byte[readVarInt(in)];
+            in.get(text);
+            messages.add(toMessage(type, new String(text, StandardCharsets.UTF_8)));
+        }
+        return messages;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.datamining.ssedemo.repository;
+
+import com.datamining.ssedemo.dto.ChatSummary;
+
+import java.util.List;
+
+/**
+ * 会话列表的一页，按创建顺序排列。
+ *
+ * @param nextCursor 下一页的游标，已到末尾时为 null
+ */
+public record ChatPage(List<ChatSummary> chats, String nextCursor) {
+}
@@ -0,0 +1,688 @@
+package com.datamining.ssedemo.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 基于本地追加日志的 {@link ChatMemoryRepository}，重启后会话不丢失，不依赖外部数据库。
+ * <p>
+ * 写入：{@link #saveAll} 与当前内容比较，只追加差异（APPEND 新消息、TRUNCATE 掉被窗口挤出的旧消息）。
+ * 所有写入交给单个写线程，写线程把同一时刻排队的写入合并成一批，整批写完后只 fsync 一次（group commit），调用方在数据落盘后返回。
+ * <p>
+ * 读取：每个会话在内存中只保存消息在段文件中的位置，读取时从映射缓冲区解码对应的那段文本，不把整个段读入堆内存。
+ * <p>
+ * 压缩：专用的后台线程定期检查最旧的段，存活数据比例低于阈值时把其中仍存活的消息按原序号重新追加到当前段，然后删除该段。
+ * 一个段的全部存活消息合并为一次写入、只落盘一次，写入期间不持有会话锁；写入完成后在会话锁内更新索引，
+ * 期间被截断或删除的会话整体重写一次，使日志重放的结果与内存索引一致。
+ * 只按从旧到新的顺序删除段，保证重放剩余的段得到的状态与删除前一致。
+ * 每条消息带有会话内单调递增的序号，TRUNCATE 按序号截断，重复的 APPEND 以后写的为准，因此重放是幂等的。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.memory.store", havingValue = "file")
+public class FileChatMemoryRepository implements ChatMemoryRepository {
+
+    private static final byte OP_APPEND = 1;
+    private static final byte OP_TRUNCATE = 2;
+    private static final byte OP_DELETE = 3;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{20})\\.log");
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final double compactionThreshold;
+    private final int maxBatch;
+    private final boolean fsync;
+
+    private final List<ChatLogSegment> segments = new CopyOnWriteArrayList<>();
+    private volatile ChatLogSegment active;
+    private final Map<String, Conversation> conversations = new ConcurrentHashMap<>();
+
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final ScheduledExecutorService compactor;
+    private volatile boolean running = true;
+
+    private final Counter commits;
+    private final DistributionSummary batchSize;
+
+    public FileChatMemoryRepository(MeterRegistry meterRegistry,
+                                    @Value("${chat.memory.file.dir:data/chat-memory}") Path directory,
+                                    @Value("${chat.memory.file.segment-size:64MB}") DataSize segmentSize,
+                                    @Value("${chat.memory.file.compaction-threshold:0.5}") double compactionThreshold,
+                                    @Value("${chat.memory.file.compaction-interval:PT5M}") Duration compactionInterval,
+                                    @Value("${chat.memory.file.max-batch:256}") int maxBatch,
+                                    @Value("${chat.memory.file.fsync:true}") boolean fsync) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = (int) Math.min(Integer.MAX_VALUE, segmentSize.toBytes());
+        this.compactionThreshold = compactionThreshold;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        recover();
+
+        this.commits = Counter.builder("chat.memory.file.commits")
+                .description("group commit 的批次数，每批 fsync 一次")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("chat.memory.file.batch-size")
+                .description("每批合并的写入请求数")
+                .register(meterRegistry);
+        Gauge.builder("chat.memory.file.segments", segments, List::size)
+                .register(meterRegistry);
+
+        this.writer = new Thread(this::writeLoop, "chat-memory-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+
+        CustomizableThreadFactory compactorFactory = new CustomizableThreadFactory("chat-memory-compactor-");
+        compactorFactory.setDaemon(true);
+        this.compactor = Executors.newSingleThreadScheduledExecutor(compactorFactory);
+        long intervalMillis = Math.max(1, compactionInterval.toMillis());
+        this.compactor.scheduleWithFixedDelay(this::compactQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 按会话最早一条存活消息在日志中的位置排序，近似为创建顺序，供重启后恢复会话列表。
+     */
+    @Override
+    public List<String> findConversationIds() {
+        List<Map.Entry<String, Entry>> oldest = new ArrayList<>(conversations.size());
+        for (Map.Entry<String, Conversation> e : conversations.entrySet()) {
+            Conversation conversation = e.getValue();
+            synchronized (conversation) {
+                if (!conversation.entries.isEmpty()) {
+                    oldest.add(Map.entry(e.getKey(), conversation.entries.get(0)));
+                }
+            }
+        }
+        oldest.sort(Comparator.comparingLong((Map.Entry<String, Entry> e) -> e.getValue().segment().id())
+                .thenComparingInt(e -> e.getValue().recordPosition()));
+        List<String> ids = new ArrayList<>(oldest.size());
+        for (Map.Entry<String, Entry> e : oldest) {
+            ids.add(e.getKey());
+        }
+        return ids;
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        Conversation conversation = conversations.get(conversationId);
+        if (conversation == null) {
+            return Collections.emptyList();
+        }
+        Entry[] snapshot;
+        synchronized (conversation) {
+            snapshot = conversation.entries.toArray(new Entry[0]);
+        }
+        List<Message> messages = new ArrayList<>(snapshot.length);
+        for (Entry entry : snapshot) {
+            messages.add(ChatMessageCodec.toMessage(entry.type(), entry.segment().readText(entry.textOffset(), entry.textLength())));
+        }
+        return messages;
+    }
+
+    /**
+     * 用 messages 替换会话的全部内容：保留与当前内容尾部重合的部分，只写入截断与新增的消息。
+     */
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        byte[] id = encodeId(conversationId);
+        List<EncodedMessage> encoded = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            EncodedMessage e = encode(message);
+            if (e != null) {
+                encoded.add(e);
+            }
+        }
+        while (true) {
+            Conversation conversation = conversations.computeIfAbsent(conversationId, key -> new Conversation());
+            synchronized (conversation) {
+                if (conversations.get(conversationId) != conversation) {
+                    // 等锁期间会话被删除，重新获取
+                    continue;
+                }
+                List<Entry> entries = conversation.entries;
+                int keepFrom = overlap(entries, encoded);
+                int kept = entries.size() - keepFrom;
+                List<ByteBuffer> records = new ArrayList<>();
+                List<Object[]> appended = new ArrayList<>();
+                if (keepFrom > 0) {
+                    long before = keepFrom < entries.size() ? entries.get(keepFrom).seq() : conversation.nextSeq;
+                    records.add(record(OP_TRUNCATE, id, before, (byte) 0, null));
+                }
+                long seq = conversation.nextSeq;
+                for (int i = kept; i < encoded.size(); i++) {
+                    EncodedMessage message = encoded.get(i);
+                    records.add(record(OP_APPEND, id, seq, message.type(), message.text()));
+                    appended.add(new Object[]{seq, message});
+                    seq++;
+                }
+                if (records.isEmpty()) {
+                    return;
+                }
+                List<Written> written = write(records);
+                int w = 0;
+                if (keepFrom > 0) {
+                    long before = keepFrom < entries.size() ? entries.get(keepFrom).seq() : conversation.nextSeq;
+                    conversation.truncate(before);
+                    w++;
+                }
+                for (Object[] append : appended) {
+                    EncodedMessage message = (EncodedMessage) append[1];
+                    conversation.append(entry((long) append[0], id.length, message.type(), message.text(), written.get(w++)));
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        Conversation conversation = conversations.get(conversationId);
+        if (conversation == null) {
+            return;
+        }
+        synchronized (conversation) {
+            if (conversations.get(conversationId) != conversation) {
+                return;
+            }
+            write(List.of(record(OP_DELETE, encodeId(conversationId), 0, (byte) 0, null)));
+            conversation.truncate(Long.MAX_VALUE);
+            conversations.remove(conversationId, conversation);
+        }
+    }
+
+    /**
+     * 从最旧的段开始，存活比例低于阈值的段把存活消息搬到当前段后删除；遇到第一个不需要压缩的段即停止。
+     */
+    public void compact() {
+        for (ChatLogSegment segment : segments) {
+            if (segment == active || segment.writePosition() == 0) {
+                return;
+            }
+            double liveRatio = (double) segment.liveBytes().get() / segment.writePosition();
+            if (liveRatio >= compactionThreshold) {
+                return;
+            }
+            relocate(segment);
+            if (segment.liveBytes().get() != 0) {
+                log.warn("会话日志段 {} 仍有存活数据，暂不删除", segment.id());
+                return;
+            }
+            segments.remove(segment);
+            try {
+                segment.delete();
+                log.info("会话日志段 {} 已压缩删除，存活比例 {}", segment.id(), liveRatio);
+            } catch (IOException ex) {
+                log.warn("删除会话日志段 {} 失败", segment.id(), ex);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compactor.shutdownNow();
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        for (ChatLogSegment segment : segments) {
+            try {
+                segment.close();
+            } catch (IOException ex) {
+                log.warn("关闭会话日志段 {} 失败", segment.id(), ex);
+            }
+        }
+    }
+
+    /**
+     * 定时任务入口，异常只记录日志，避免终止后续调度。
+     */
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException ex) {
+            log.error("压缩会话日志失败", ex);
+        }
+    }
+
+    /**
+     * 把段中所有存活消息合并成一次写入搬到当前段，再逐个会话更新索引。
+     */
+    private void relocate(ChatLogSegment segment) {
+        List<Moving> moving = new ArrayList<>();
+        List<ByteBuffer> records = new ArrayList<>();
+        for (Map.Entry<String, Conversation> e : conversations.entrySet()) {
+            Conversation conversation = e.getValue();
+            synchronized (conversation) {
+                if (conversations.get(e.getKey()) != conversation) {
+                    continue;
+                }
+                byte[] id = null;
+                for (Entry entry : conversation.entries) {
+                    if (entry.segment() == segment) {
+                        if (id == null) {
+                            id = encodeId(e.getKey());
+                        }
+                        byte[] text = segment.readBytes(entry.textOffset(), entry.textLength());
+                        records.add(record(OP_APPEND, id, entry.seq(), entry.type(), text));
+                        moving.add(new Moving(e.getKey(), conversation, entry));
+                    }
+                }
+            }
+        }
+        if (records.isEmpty()) {
+            return;
+        }
+        List<Written> written = write(records);
+        Set<String> stale = new LinkedHashSet<>();
+        int i = 0;
+        while (i < moving.size()) {
+            Conversation conversation = moving.get(i).conversation();
+            synchronized (conversation) {
+                boolean current = conversations.get(moving.get(i).conversationId()) == conversation;
+                for (; i < moving.size() && moving.get(i).conversation() == conversation; i++) {
+                    Entry old = moving.get(i).entry();
+                    if (current && conversation.contains(old)) {
+                        Written w = written.get(i);
+                        conversation.append(new Entry(old.seq(), w.segment(), w.position(), old.recordBytes(), old.type(),
+                                w.position() + (old.textOffset() - old.recordPosition()), old.textLength(), old.hash()));
+                    } else {
+                        // 快照之后该消息被截断或会话被删除：搬运的记录可能写在截断之后，重放时会把它恢复
+                        stale.add(moving.get(i).conversationId());
+                    }
+                }
+            }
+        }
+        for (String conversationId : stale) {
+            rewrite(conversationId);
+        }
+    }
+
+    /**
+     * 写入 DELETE 与会话当前的全部消息，使日志中该会话此前的记录（包括过时的搬运记录）不再影响重放结果。
+     */
+    private void rewrite(String conversationId) {
+        while (true) {
+            Conversation conversation = conversations.computeIfAbsent(conversationId, key -> new Conversation());
+            synchronized (conversation) {
+                if (conversations.get(conversationId) != conversation) {
+                    continue;
+                }
+                byte[] id = encodeId(conversationId);
+                List<Entry> live = new ArrayList<>(conversation.entries);
+                List<ByteBuffer> records = new ArrayList<>(live.size() + 1);
+                records.add(record(OP_DELETE, id, 0, (byte) 0, null));
+                for (Entry entry : live) {
+                    byte[] text = entry.segment().readBytes(entry.textOffset(), entry.textLength());
+                    records.add(record(OP_APPEND, id, entry.seq(), entry.type(), text));
+                }
+                List<Written> written = write(records);
+                if (live.isEmpty()) {
+                    conversations.remove(conversationId, conversation);
+                    return;
+                }
+                for (int i = 0; i < live.size(); i++) {
+                    Entry old = live.get(i);
+                    Written w = written.get(i + 1);
+                    conversation.append(new Entry(old.seq(), w.segment(), w.position(), old.recordBytes(), old.type(),
+                            w.position() + (old.textOffset() - old.recordPosition()), old.textLength(), old.hash()));
+                }
+                return;
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- 写线程
+
+    /**
+     * 提交一组记录并等待它们落盘，返回每条记录写入的位置。
+     */
+    private List<Written> write(List<ByteBuffer> records) {
+        for (ByteBuffer record : records) {
+            if (record.remaining() > segmentBytes) {
+                throw new IllegalArgumentException("单条消息超过会话日志段大小");
+            }
+        }
+        PendingWrite pending = new PendingWrite(records, new CompletableFuture<>());
+        if (!running) {
+            throw new IllegalStateException("会话日志已关闭");
+        }
+        queue.add(pending);
+        try {
+            return pending.done().join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw ex;
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                commit(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingWrite> batch) {
+        List<List<Written>> results = new ArrayList<>(batch.size());
+        Set<ChatLogSegment> dirty = new LinkedHashSet<>();
+        try {
+            for (PendingWrite pending : batch) {
+                List<Written> written = new ArrayList<>(pending.records().size());
+                for (ByteBuffer record : pending.records()) {
+                    if (record.remaining() > active.remaining()) {
+                        roll();
+                    }
+                    ChatLogSegment segment = active;
+                    written.add(new Written(segment, segment.append(record)));
+                    dirty.add(segment);
+                }
+                results.add(written);
+            }
+            if (fsync) {
+                for (ChatLogSegment segment : dirty) {
+                    segment.force();
+                }
+            }
+            commits.increment();
+            batchSize.record(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).done().complete(results.get(i));
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.error("写入会话日志失败", ex);
+            RuntimeException failure = ex instanceof IOException io ? new UncheckedIOException(io) : (RuntimeException) ex;
+            for (PendingWrite pending : batch) {
+                pending.done().completeExceptionally(failure);
+            }
+        }
+    }
+
+    private void roll() throws IOException {
+        ChatLogSegment next = ChatLogSegment.open(segmentPath(active.id() + 1), active.id() + 1, segmentBytes);
+        segments.add(next);
+        active = next;
+    }
+
+    // ---------------------------------------------------------------- 恢复
+
+    private void recover() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> {
+                Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    ids.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        Collections.sort(ids);
+        for (long segmentId : ids) {
+            ChatLogSegment segment = ChatLogSegment.open(segmentPath(segmentId), segmentId, segmentBytes);
+            int position = 0;
+            ByteBuffer body;
+            while ((body = segment.readBody(position)) != null) {
+                int recordBytes = ChatLogSegment.RECORD_HEADER_BYTES + body.remaining();
+                replay(segment, position, recordBytes, body);
+                position += recordBytes;
+            }
+            segment.writePosition(position);
+            segments.add(segment);
+        }
+        if (segments.isEmpty()) {
+            segments.add(ChatLogSegment.open(segmentPath(1), 1, segmentBytes));
+        }
+        active = segments.get(segments.size() - 1);
+        conversations.values().removeIf(conversation -> conversation.entries.isEmpty());
+        log.info("会话日志恢复完成: {} 个段, {} 个会话", segments.size(), conversations.size());
+    }
+
+    private void replay(ChatLogSegment segment, int position, int recordBytes, ByteBuffer body) {
+        byte op = body.get();
+        byte[] idBytes = new byte[body.getShort()];
+        body.get(idBytes);
+        String conversationId = new String(idBytes, StandardCharsets.UTF_8);
+        long seq = body.getLong();
+        switch (op) {
+            case OP_APPEND -> {
+                byte type = body.get();
+                int textOffset = position + ChatLogSegment.RECORD_HEADER_BYTES + body.position();
+                int textLength = body.remaining();
+                int hash = type;
+                while (body.hasRemaining()) {
+                    hash = 31 * hash + body.get();
+                }
+                conversations.computeIfAbsent(conversationId, key -> new Conversation())
+                        .append(new Entry(seq, segment, position, recordBytes, type, textOffset, textLength, hash));
+            }
+            case OP_TRUNCATE -> {
+                Conversation conversation = conversations.get(conversationId);
+                if (conversation != null) {
+                    conversation.truncate(seq);
+                }
+            }
+            case OP_DELETE -> {
+                Conversation conversation = conversations.remove(conversationId);
+                if (conversation != null) {
+                    conversation.truncate(Long.MAX_VALUE);
+                }
+            }
+            default -> log.warn("会话日志段 {} 位置 {} 存在未知操作 {}", segment.id(), position, op);
+        }
+    }
+
+    // ---------------------------------------------------------------- 编码
+
+    /**
+     * 找到最小的 k，使当前内容从第 k 条起与 messages 的开头逐条相同；都不相同时返回 entries.size()。
+     */
+    private static int overlap(List<Entry> entries, List<EncodedMessage> messages) {
+        for (int k = 0; k < entries.size(); k++) {
+            int kept = entries.size() - k;
+            if (kept > messages.size()) {
+                continue;
+            }
+            boolean same = true;
+            for (int i = 0; i < kept && same; i++) {
+                Entry entry = entries.get(k + i);
+                EncodedMessage message = messages.get(i);
+                // 哈希只用于快速排除，相同时再逐字节比较，避免碰撞时漏写改动过的消息
+                same = entry.type() == message.type()
+                        && entry.textLength() == message.text().length
+                        && entry.hash() == message.hash()
+                        && entry.segment().contentEquals(entry.textOffset(), message.text());
+            }
+            if (same) {
+                return k;
+            }
+        }
+        return entries.size();
+    }
+
+    private static Entry entry(long seq, int idLength, byte type, byte[] text, Written written) {
+        int bodyBytes = bodyBytes(OP_APPEND, idLength, text);
+        int textOffset = written.position() + ChatLogSegment.RECORD_HEADER_BYTES + bodyBytes - text.length;
+        return new Entry(seq, written.segment(), written.position(), ChatLogSegment.RECORD_HEADER_BYTES + bodyBytes,
+                type, textOffset, text.length, hash(type, text));
+    }
+
+    private static ByteBuffer record(byte op, byte[] id, long seq, byte type, byte[] text) {
+        int bodyBytes = bodyBytes(op, id.length, text);
+        ByteBuffer buffer = ByteBuffer.allocate(ChatLogSegment.RECORD_HEADER_BYTES + bodyBytes);
+        buffer.putInt(bodyBytes).putInt(0);
+        buffer.put(op).putShort((short) id.length).put(id).putLong(seq);
+        if (op == OP_APPEND) {
+            buffer.put(type).put(text);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), ChatLogSegment.RECORD_HEADER_BYTES, bodyBytes);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int bodyBytes(byte op, int idLength, byte[] text) {
+        return 1 + 2 + idLength + 8 + (op == OP_APPEND ? 1 + text.length : 0);
+    }
+
+    private static byte[] encodeId(String conversationId) {
+        byte[] id = conversationId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("会话 id 过长");
+        }
+        return id;
+    }
+
+    private static EncodedMessage encode(Message message) {
+        byte type = ChatMessageCodec.typeOf(message);
+        if (type == 0) {
+            return null;
+        }
+        byte[] bytes = ChatMessageCodec.textOf(message);
+        return new EncodedMessage(type, bytes, hash(type, bytes));
+    }
+
+    private static int hash(byte type, byte[] text) {
+        int hash = type;
+        for (byte b : text) {
+            hash = 31 * hash + b;
+        }
+        return hash;
+    }
+
+    private Path segmentPath(long segmentId) {
+        return directory.resolve(String.format("segment-%020d.log", segmentId));
+    }
+
+    /**
+     * 一条存活的消息：所在段、记录位置与大小，以及文本在段内的位置。
+     */
+    private record Entry(long seq, ChatLogSegment segment, int recordPosition, int recordBytes,
+                         byte type, int textOffset, int textLength, int hash) {
+    }
+
+    private record EncodedMessage(byte type, byte[] text, int hash) {
+    }
+
+    private record Written(ChatLogSegment segment, int position) {
+    }
+
+    private record Moving(String conversationId, Conversation conversation, Entry entry) {
+    }
+
+    private record PendingWrite(List<ByteBuffer> records, CompletableFuture<List<Written>> done) {
+    }
+
+    /**
+     * 单个会话的内存索引，按序号升序；读写都在该对象上加锁。
+     */
+    private static final class Conversation {
+        private final ArrayList<Entry> entries = new ArrayList<>();
+        private long nextSeq;
+
+        /**
+         * 追加或按序号替换一条消息，并维护各段的存活字节数。
+         */
+        private void append(Entry entry) {
+            int index = entries.size();
+            if (!entries.isEmpty() && entries.get(index - 1).seq() >= entry.seq()) {
+                index = Collections.binarySearch(entries, entry, (a, b) -> Long.compare(a.seq(), b.seq()));
+                if (index >= 0) {
+                    Entry replaced = entries.set(index, entry);
+                    replaced.segment().liveBytes().addAndGet(-replaced.recordBytes());
+                    entry.segment().liveBytes().addAndGet(entry.recordBytes());
+                    return;
+                }
+                index = -index - 1;
+            }
+            entries.add(index, entry);
+            entry.segment().liveBytes().addAndGet(entry.recordBytes());
+            nextSeq = Math.max(nextSeq, entry.seq() + 1);
+        }
+
+        /**
+         * 是否仍包含这条消息（同一序号且位于同一位置）。
+         */
+        private boolean contains(Entry entry) {
+            int index = Collections.binarySearch(entries, entry, (a, b) -> Long.compare(a.seq(), b.seq()));
+            if (index < 0) {
+                return false;
+            }
+            Entry found = entries.get(index);
+            return found.segment() == entry.segment() && found.recordPosition() == entry.recordPosition();
+        }
+
+        /**
+         * 删除序号小于 before 的消息。
+         */
+        private void truncate(long before) {
+            int count = 0;
+            while (count < entries.size() && entries.get(count).seq() < before) {
+                Entry removed = entries.get(count);
+                removed.segment().liveBytes().addAndGet(-removed.recordBytes());
+                count++;
+            }
+            entries.subList(0, count).clear();
+            if (before != Long.MAX_VALUE) {
+                nextSeq = Math.max(nextSeq, before);
+            }
+        }
+    }
+}
@@ -1,26 +1,161 @@
 package com.datamining.ssedemo.repository;
 
+import com.datamining.ssedemo.dto.ChatSummary;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
 import org.springframework.stereotype.Component;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * 存入内存配置
+ * <p>
+ * 去重用 ConcurrentHashMap，创建顺序用按序号寻址的分块追加日志，插入与去重都是 O(1)，读写互不加锁。
+ * 分页游标就是会话的序号：列表从游标处顺序读取，遇到序号已分配但尚未发布的会话时停在那里，
+ * 下一页从该处继续，因此不会漏掉并发创建的会话。
+ * <p>
+ * 列表本身不持久化：启动时按 {@link ChatMemoryRepository#findConversationIds()} 恢复，
+ * 会话记忆持久化在本地时（chat.memory.store=file），重启前的会话仍能在列表中找到。
+ * 恢复的会话创建时间记为启动时刻，消息计数从 0 开始。
  */
 @Component
 public class InMemoryChatHistoryRepository implements ChatHistoryRepository {
-    private final List<String> chatHistory = new ArrayList<>();
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MAX_CHUNKS = 1 << 16;
+
+    private final Map<String, ChatEntry> chats = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<AtomicReferenceArray<ChatEntry>> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    private final AtomicLong sequence = new AtomicLong();
+
+    public InMemoryChatHistoryRepository(ChatMemoryRepository chatMemoryRepository) {
+        long now = System.currentTimeMillis();
+        for (String chatId : chatMemoryRepository.findConversationIds()) {
+            chats.computeIfAbsent(chatId, id -> {
+                ChatEntry restored = new ChatEntry(id, sequence.getAndIncrement(), now, 0);
+                publish(restored);
+                return restored;
+            });
+        }
+    }
 
     @Override
     public void save(String chatId) {
-        if (chatHistory.contains(chatId)) {
+        if (chatId == null) {
             return;
         }
-        chatHistory.add(chatId);
+        long now = System.currentTimeMillis();
+        boolean[] created = new boolean[1];
+        ChatEntry entry = chats.computeIfAbsent(chatId, id -> {
+            created[0] = true;
+            ChatEntry fresh = new ChatEntry(id, sequence.getAndIncrement(), now, 1);
+            publish(fresh);
+            return fresh;
+        });
+        if (!created[0]) {
+            entry.touch(now);
+        }
     }
 
     @Override
     public List<String> getChatIds() {
-        return Collections.unmodifiableList(chatHistory);
+        List<String> ids = new ArrayList<>();
+        long end = sequence.get();
+        for (long seq = 0; seq < end; seq++) {
+            ChatEntry entry = slot(seq);
+            if (entry == null) {
+                break;
+            }
+            ids.add(entry.chatId);
+        }
+        return ids;
+    }
+
+    @Override
+    public ChatPage getChats(String cursor, int limit) {
+        long start = parseCursor(cursor);
+        long end = sequence.get();
+        List<ChatSummary> page = new ArrayList<>(Math.max(0, Math.min(limit, (int) Math.min(Integer.MAX_VALUE, end - start))));
+        long seq = start;
+        while (seq < end && page.size() < limit) {
+            ChatEntry entry = slot(seq);
+            if (entry == null) {
+                break;
+            }
+            page.add(entry.toSummary());
+            seq++;
+        }
+        return new ChatPage(page, seq < end ? Long.toString(seq) : null);
+    }
+
+    @Override
+    public Optional<ChatSummary> find(String chatId) {
+        ChatEntry entry = chatId == null ? null : chats.get(chatId);
+        return Optional.ofNullable(entry).map(ChatEntry::toSummary);
+    }
+
+    private void publish(ChatEntry entry) {
+        int chunkIndex = (int) (entry.seq >>> CHUNK_BITS);
+        if (chunkIndex >= MAX_CHUNKS) {
+            throw new IllegalStateException("会话数量超出上限");
+        }
+        AtomicReferenceArray<ChatEntry> chunk = chunks.get(chunkIndex);
+        if (chunk == null) {
+            chunks.compareAndSet(chunkIndex, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = chunks.get(chunkIndex);
+        }
+        chunk.set((int) (entry.seq & CHUNK_MASK), entry);
+    }
+
+    private ChatEntry slot(long seq) {
+        AtomicReferenceArray<ChatEntry> chunk = chunks.get((int) (seq >>> CHUNK_BITS));
+        return chunk == null ? null : chunk.get((int) (seq & CHUNK_MASK));
+    }
+
+    private static long parseCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            long seq = Long.parseLong(cursor.trim());
+            if (seq < 0) {
+                throw new IllegalArgumentException("无效的游标: " + cursor);
+            }
+            return seq;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("无效的游标: " + cursor, ex);
+        }
+    }
+
+    private static final class ChatEntry {
+        private final String chatId;
+        private final long seq;
+        private final long createdAt;
+        private final AtomicLong messageCount;
+        private volatile long lastActiveAt;
+
+        private ChatEntry(String chatId, long seq, long createdAt, long messageCount) {
+            this.chatId = chatId;
+            this.seq = seq;
+            this.createdAt = createdAt;
+            this.messageCount = new AtomicLong(messageCount);
+            this.lastActiveAt = createdAt;
+        }
+
+        private void touch(long now) {
+            messageCount.incrementAndGet();
+            lastActiveAt = now;
+        }
+
+        private ChatSummary toSummary() {
+            return new ChatSummary(chatId, createdAt, lastActiveAt, messageCount.get());
+        }
     }
 }
@@ -0,0 +1,152 @@
+package com.datamining.ssedemo.repository;
+
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的 {@link ChatMemoryRepository}：每个会话编码后存放在一块堆外缓冲区中，堆上只保留会话 id 与缓冲区引用。
+ * <p>
+ * 缓冲区按 2 的幂分级，新的编码放得下时直接覆盖原缓冲区；放不下时换用更大一级，旧缓冲区连同删除会话的缓冲区
+ * 一起归还到按级别划分的空闲池，供其他会话复用。池中总字节数不超过 poolSize，超出的与超过最大级别的缓冲区交给 GC 回收。
+ * 会话长度受 max-messages 限制，稳定后写入不再分配堆外内存，也就不会因直接内存不足触发 {@code System.gc()}。
+ * <p>
+ * 进程重启后内容丢失，需要持久化时使用 {@link FileChatMemoryRepository}。
+ */
+public class OffHeapChatMemoryRepository implements ChatMemoryRepository {
+
+    private static final int MIN_CLASS_SHIFT = 10;
+    private static final int MAX_CLASS_SHIFT = 20;
+
+    private final Map<String, Slot> conversations = new ConcurrentHashMap<>();
+    private final BufferPool pool;
+
+    /**
+     * @param poolSize 空闲池最多保留的堆外字节数
+     */
+    public OffHeapChatMemoryRepository(long poolSize) {
+        this.pool = new BufferPool(poolSize);
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        return new ArrayList<>(conversations.keySet());
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        Slot slot = conversations.get(conversationId);
+        if (slot == null) {
+            return Collections.emptyList();
+        }
+        // 缓冲区可能被原地覆盖或归还到池中，解码期间持有会话锁
+        synchronized (slot) {
+            return slot.buffer == null ? Collections.emptyList() : ChatMessageCodec.decode(slot.buffer);
+        }
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        byte[] encoded = ChatMessageCodec.encode(messages);
+        while (true) {
+            Slot slot = conversations.computeIfAbsent(conversationId, id -> new Slot());
+            synchronized (slot) {
+                if (slot.removed) {
+                    // 与删除并发：该槽位已从表中移除，重新取一次
+                    continue;
+                }
+                if (slot.buffer == null || slot.buffer.capacity() < encoded.length) {
+                    ByteBuffer previous = slot.buffer;
+                    slot.buffer = pool.acquire(encoded.length);
+                    if (previous != null) {
+                        pool.release(previous);
+                    }
+                }
+                slot.buffer.clear();
+                slot.buffer.put(encoded).flip();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        Slot slot = conversations.remove(conversationId);
+        if (slot == null) {
+            return;
+        }
+        synchronized (slot) {
+            slot.removed = true;
+            if (slot.buffer != null) {
+                pool.release(slot.buffer);
+                slot.buffer = null;
+            }
+        }
+    }
+
+    /**
+     * 一个会话当前使用的缓冲区，position 到 limit 为编码内容；读写都在该对象上同步。
+     */
+    private static final class Slot {
+        private ByteBuffer buffer;
+        private boolean removed;
+    }
+
+    /**
+     * 按 2 的幂分级的堆外缓冲区空闲池。
+     */
+    private static final class BufferPool {
+        private final long maxPooledBytes;
+        private final AtomicLong pooledBytes = new AtomicLong();
+        private final List<Queue<ByteBuffer>> free = new ArrayList<>();
+
+        private BufferPool(long maxPooledBytes) {
+            this.maxPooledBytes = maxPooledBytes;
+            for (int shift = MIN_CLASS_SHIFT; shift <= MAX_CLASS_SHIFT; shift++) {
+                free.add(new ConcurrentLinkedQueue<>());
+            }
+        }
+
+        ByteBuffer acquire(int size) {
+            int shift = classShift(size);
+            if (shift > MAX_CLASS_SHIFT) {
+                return ByteBuffer.allocateDirect(size);
+            }
+            ByteBuffer buffer = free.get(shift - MIN_CLASS_SHIFT).poll();
+            if (buffer == null) {
+                return ByteBuffer.allocateDirect(1 << shift);
+            }
+            pooledBytes.addAndGet(-buffer.capacity());
+            return buffer;
+        }
+
+        void release(ByteBuffer buffer) {
+            int capacity = buffer.capacity();
+            // 只回收按级别分配的缓冲区
+            if (Integer.bitCount(capacity) != 1 || capacity < 1 << MIN_CLASS_SHIFT || capacity > 1 << MAX_CLASS_SHIFT) {
+                return;
+            }
+            if (pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+                pooledBytes.addAndGet(-capacity);
+                return;
+            }
+            free.get(Integer.numberOfTrailingZeros(capacity) - MIN_CLASS_SHIFT).offer(buffer);
+        }
+
+        private static int classShift(int size) {
+            if (size <= 1 << MIN_CLASS_SHIFT) {
+                return MIN_CLASS_SHIFT;
+            }
+            return 32 - Integer.numberOfLeadingZeros(size - 1);
+        }
+    }
+}
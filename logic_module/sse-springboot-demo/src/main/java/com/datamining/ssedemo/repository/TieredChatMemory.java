@@ -0,0 +1,417 @@
+package com.datamining.ssedemo.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import com.datamining.ssedemo.service.ConversationSummarizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 分层的会话记忆：活跃会话以消息对象的形式保存在堆内 LRU 中，闲置会话只保留在 {@link ChatMemoryRepository} 的紧凑二进制形式里
+ * （堆外缓冲区或本地文件），下次访问时再加载回堆内。
+ * <p>
+ * 写入直接落到底层存储（write-through），因此热层淘汰时不需要再写回，只释放堆内对象。
+ * 热层按估算的堆内字节数限制总量，超过预算时淘汰最久未访问的会话；定时任务另外淘汰闲置超过 idle-timeout 的会话。
+ * <p>
+ * 窗口按条数限制（max-messages）：超出时从最早的非系统消息开始移出窗口，至少保留最近一轮。
+ * 窗口同时是界面重新打开会话时展示的记录，因此不按 token 裁剪；提示词中的历史由
+ * {@link com.datamining.ssedemo.service.impl.AdvicePromptBuilder} 按自己的 token 预算截取。
+ * 移出的消息交给 {@link ConversationSummarizer} 在后台折叠进滚动摘要，摘要完成后作为窗口开头的系统消息写回，
+ * 因此后续轮次带上的历史大小基本恒定，且摘要不在请求路径上计算。每个会话的摘要在内存中缓存，下一轮只需合并新移出的消息。
+ */
+@Slf4j
+@Component
+public class TieredChatMemory implements ChatMemory {
+
+    /**
+     * 单条消息对象本身的估算开销（Message、String、数组头、元数据 Map 等）。
+     */
+    private static final long MESSAGE_OVERHEAD_BYTES = 160;
+    private static final long CONVERSATION_OVERHEAD_BYTES = 128;
+    private static final int LOCK_STRIPES = 256;
+    private static final int MIN_KEPT_MESSAGES = 2;
+
+    /**
+     * 滚动摘要以带此前缀的系统消息保存在窗口开头，重启后从存储中恢复。
+     */
+    public static final String SUMMARY_PREFIX = "[对话摘要] ";
+
+    private final ChatMemoryRepository repository;
+    private final ConversationSummarizer summarizer;
+    private final int maxMessages;
+    private final long heapBudgetBytes;
+    private final long idleTimeoutMillis;
+
+    /**
+     * 访问顺序的 LinkedHashMap，所有访问都在自身上加锁。
+     */
+    private final LinkedHashMap<String, Hot> hot = new LinkedHashMap<>(256, 0.75f, true);
+    private long heapBytes;
+
+    /**
+     * 按会话 id 分段的锁，保证同一会话的加载、写入与清除串行执行，且底层存储中的内容总是最新的。
+     */
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final Map<String, SummaryState> summaries = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter promotions;
+    private final Counter demotions;
+
+    public TieredChatMemory(ChatMemoryRepository repository,
+                            ConversationSummarizer summarizer,
+                            MeterRegistry meterRegistry,
+                            @Value("${chat.memory.max-messages:20}") int maxMessages,
+                            @Value("${chat.memory.tiered.heap-budget:64MB}") DataSize heapBudget,
+                            @Value("${chat.memory.tiered.idle-timeout:PT30M}") Duration idleTimeout) {
+        this.repository = repository;
+        this.summarizer = summarizer;
+        this.maxMessages = Math.max(MIN_KEPT_MESSAGES + 1, maxMessages);
+        this.heapBudgetBytes = heapBudget.toBytes();
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+
+        this.hits = Counter.builder("chat.memory.tier.requests").tag("result", "hit")
+                .description("会话记忆访问时命中堆内热层的次数").register(meterRegistry);
+        this.misses = Counter.builder("chat.memory.tier.requests").tag("result", "miss")
+                .description("会话记忆访问时未命中堆内热层的次数").register(meterRegistry);
+        this.promotions = Counter.builder("chat.memory.tier.transitions").tag("direction", "promotion")
+                .description("从底层存储加载回堆内热层的会话数").register(meterRegistry);
+        this.demotions = Counter.builder("chat.memory.tier.transitions").tag("direction", "demotion")
+                .description("从堆内热层淘汰的会话数").register(meterRegistry);
+        Gauge.builder("chat.memory.tier.heap-bytes", this, memory -> memory.heapBytes())
+                .description("堆内热层的估算字节数").register(meterRegistry);
+        Gauge.builder("chat.memory.tier.conversations", this, memory -> memory.hotCount())
+                .description("堆内热层中的会话数").register(meterRegistry);
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        synchronized (lockFor(conversationId)) {
+            List<Message> current = load(conversationId);
+            List<Message> evicted = new ArrayList<>();
+            List<Message> window = window(current, messages, evicted);
+            repository.saveAll(conversationId, window);
+            cache(conversationId, window);
+            if (!evicted.isEmpty()) {
+                enqueueSummary(conversationId, summaryOf(window), evicted);
+            }
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        Hot entry = touch(conversationId);
+        if (entry != null) {
+            hits.increment();
+            return entry.messages;
+        }
+        synchronized (lockFor(conversationId)) {
+            return load(conversationId);
+        }
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        synchronized (lockFor(conversationId)) {
+            summaries.remove(conversationId);
+            repository.deleteByConversationId(conversationId);
+            synchronized (hot) {
+                Hot removed = hot.remove(conversationId);
+                if (removed != null) {
+                    heapBytes -= removed.bytes;
+                }
+            }
+        }
+    }
+
+    /**
+     * 把闲置超过 idle-timeout 的会话移出堆内热层。
+     */
+    @Scheduled(fixedDelayString = "${chat.memory.tiered.sweep-interval:PT1M}")
+    public void demoteIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        List<String> demoted = new ArrayList<>();
+        synchronized (hot) {
+            // 访问顺序迭代，最久未访问的在前，遇到仍活跃的即可停止
+            Iterator<Map.Entry<String, Hot>> it = hot.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Hot> eldest = it.next();
+                if (eldest.getValue().lastAccess >= cutoff) {
+                    break;
+                }
+                it.remove();
+                heapBytes -= eldest.getValue().bytes;
+                demoted.add(eldest.getKey());
+            }
+        }
+        if (!demoted.isEmpty()) {
+            onDemoted(demoted);
+            log.debug("淘汰 {} 个闲置会话出堆内热层", demoted.size());
+        }
+    }
+
+    /**
+     * 在会话锁内调用：优先返回热层内容，否则从底层存储加载并放入热层。
+     */
+    private List<Message> load(String conversationId) {
+        Hot entry = touch(conversationId);
+        if (entry != null) {
+            return entry.messages;
+        }
+        misses.increment();
+        List<Message> messages = List.copyOf(repository.findByConversationId(conversationId));
+        if (!messages.isEmpty()) {
+            promotions.increment();
+            cache(conversationId, messages);
+        }
+        return messages;
+    }
+
+    private Hot touch(String conversationId) {
+        synchronized (hot) {
+            Hot entry = hot.get(conversationId);
+            if (entry != null) {
+                entry.lastAccess = System.currentTimeMillis();
+            }
+            return entry;
+        }
+    }
+
+    private void cache(String conversationId, List<Message> messages) {
+        Hot entry = new Hot(List.copyOf(messages), estimate(messages));
+        List<String> demoted = null;
+        synchronized (hot) {
+            Hot previous = hot.put(conversationId, entry);
+            if (previous != null) {
+                heapBytes -= previous.bytes;
+            }
+            heapBytes += entry.bytes;
+            Iterator<Map.Entry<String, Hot>> it = hot.entrySet().iterator();
+            while (heapBytes > heapBudgetBytes && it.hasNext()) {
+                Map.Entry<String, Hot> eldest = it.next();
+                if (eldest.getValue() == entry) {
+                    break;
+                }
+                it.remove();
+                heapBytes -= eldest.getValue().bytes;
+                if (demoted == null) {
+                    demoted = new ArrayList<>();
+                }
+                demoted.add(eldest.getKey());
+            }
+        }
+        if (demoted != null) {
+            onDemoted(demoted);
+        }
+    }
+
+    /**
+     * 会话移出热层时一并释放空闲的摘要缓存；正在生成摘要的保留到生成结束。
+     */
+    private void onDemoted(List<String> conversationIds) {
+        demotions.increment(conversationIds.size());
+        for (String conversationId : conversationIds) {
+            summaries.computeIfPresent(conversationId, (id, state) -> state.isIdle() ? null : state);
+        }
+    }
+
+    /**
+     * 合并现有消息与新消息并按条数裁剪，被移出窗口的非系统消息放入 evicted。
+     * 新的系统消息替换旧的系统消息，但保留滚动摘要。
+     */
+    private List<Message> window(List<Message> current, List<Message> added, List<Message> evicted) {
+        boolean newSystem = added.stream().anyMatch(m -> m.getMessageType() == MessageType.SYSTEM);
+        List<Message> merged = new ArrayList<>(current.size() + added.size());
+        int conversational = 0;
+        for (Message message : current) {
+            if (!newSystem || message.getMessageType() != MessageType.SYSTEM || isSummary(message)) {
+                merged.add(message);
+            }
+        }
+        merged.addAll(added);
+        for (Message message : merged) {
+            if (message.getMessageType() != MessageType.SYSTEM) {
+                conversational++;
+            }
+        }
+        if (merged.size() <= maxMessages) {
+            return merged;
+        }
+        List<Message> trimmed = new ArrayList<>(merged.size());
+        for (Message message : merged) {
+            boolean over = merged.size() - evicted.size() > maxMessages;
+            if (over && message.getMessageType() != MessageType.SYSTEM
+                    && conversational - evicted.size() > MIN_KEPT_MESSAGES) {
+                evicted.add(message);
+                continue;
+            }
+            trimmed.add(message);
+        }
+        return trimmed;
+    }
+
+    /**
+     * 把移出窗口的消息排入该会话的摘要队列；同一会话同时只有一次摘要在进行，期间移出的消息在下一轮合并。
+     */
+    private void enqueueSummary(String conversationId, String currentSummary, List<Message> evicted) {
+        SummaryState state = summaries.computeIfAbsent(conversationId, id -> new SummaryState(currentSummary));
+        synchronized (state) {
+            state.pending.addAll(evicted);
+            if (state.running) {
+                return;
+            }
+            state.running = true;
+        }
+        startSummary(conversationId, state);
+    }
+
+    private void startSummary(String conversationId, SummaryState state) {
+        String previous;
+        List<Message> batch;
+        synchronized (state) {
+            previous = state.text;
+            batch = new ArrayList<>(state.pending);
+            state.pending.clear();
+        }
+        try {
+            summarizer.summarize(previous, batch).whenComplete((summary, error) -> {
+                if (error != null) {
+                    log.warn("会话 {} 的摘要生成失败，丢弃 {} 条待摘要消息", conversationId, batch.size(), error);
+                } else {
+                    applySummary(conversationId, state, summary);
+                }
+                boolean again;
+                synchronized (state) {
+                    again = !state.pending.isEmpty() && summaries.get(conversationId) == state;
+                    state.running = again;
+                }
+                if (again) {
+                    startSummary(conversationId, state);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // 摘要线程池繁忙：消息放回队列，等该会话下次有消息移出窗口时再试
+            synchronized (state) {
+                state.pending.addAll(0, batch);
+                state.running = false;
+            }
+        }
+    }
+
+    /**
+     * 用新摘要替换窗口开头的摘要消息；会话已被清除时放弃。
+     */
+    private void applySummary(String conversationId, SummaryState state, String summary) {
+        synchronized (lockFor(conversationId)) {
+            if (summaries.get(conversationId) != state) {
+                return;
+            }
+            synchronized (state) {
+                state.text = summary;
+            }
+            List<Message> current = load(conversationId);
+            List<Message> updated = new ArrayList<>(current.size() + 1);
+            updated.add(new SystemMessage(SUMMARY_PREFIX + summary));
+            for (Message message : current) {
+                if (!isSummary(message)) {
+                    updated.add(message);
+                }
+            }
+            repository.saveAll(conversationId, updated);
+            cache(conversationId, updated);
+        }
+    }
+
+    /**
+     * 是否为窗口开头的滚动摘要消息。
+     */
+    public static boolean isSummary(Message message) {
+        return message.getMessageType() == MessageType.SYSTEM
+                && message.getText() != null && message.getText().startsWith(SUMMARY_PREFIX);
+    }
+
+    private static String summaryOf(List<Message> window) {
+        for (Message message : window) {
+            if (isSummary(message)) {
+                return message.getText().substring(SUMMARY_PREFIX.length());
+            }
+        }
+        return null;
+    }
+
+    private static long estimate(List<Message> messages) {
+        long bytes = CONVERSATION_OVERHEAD_BYTES;
+        for (Message message : messages) {
+            String text = message.getText();
+            bytes += MESSAGE_OVERHEAD_BYTES + (text == null ? 0 : 2L * text.length());
+        }
+        return bytes;
+    }
+
+    private Object lockFor(String conversationId) {
+        return locks[(conversationId.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+
+    private long heapBytes() {
+        synchronized (hot) {
+            return heapBytes;
+        }
+    }
+
+    private int hotCount() {
+        synchronized (hot) {
+            return hot.size();
+        }
+    }
+
+    private static final class Hot {
+        private final List<Message> messages;
+        private final long bytes;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private Hot(List<Message> messages, long bytes) {
+            this.messages = messages;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * 单个会话的滚动摘要缓存与待合并的消息。
+     */
+    private static final class SummaryState {
+        private final List<Message> pending = new ArrayList<>();
+        private String text;
+        private boolean running;
+
+        private SummaryState(String text) {
+            this.text = text;
+        }
+
+        private synchronized boolean isIdle() {
+            return !running && pending.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.datamining.ssedemo.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+
+/**
+ * 按调用次数滑动窗口统计失败率的熔断器。
+ * <ul>
+ *     <li>CLOSED：正常放行，窗口内调用数达到 minimumCalls 且失败率不低于阈值时打开；</li>
+ *     <li>OPEN：直接拒绝，openDuration 之后进入半开；</li>
+ *     <li>HALF_OPEN：最多放行 halfOpenProbes 个探测请求，全部成功则关闭，任一失败重新打开。</li>
+ * </ul>
+ * 每次 {@link #tryAcquire()} 返回 true 后，调用方应以 {@link #onSuccess()}、{@link #onFailure()}
+ * 或 {@link #release()}（结果未知，如请求被取消）之一结束本次调用。
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    public record Settings(int windowSize,
+                           int minimumCalls,
+                           double failureRateThreshold,
+                           Duration openDuration,
+                           int halfOpenProbes) {
+    }
+
+    private final String name;
+    private final Settings settings;
+    private final long openNanos;
+    private final MeterRegistry meterRegistry;
+    private final Counter rejected;
+
+    /**
+     * 最近 windowSize 次调用的结果，true 表示失败。
+     */
+    private final boolean[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+    private long lastProbeAt;
+
+    public CircuitBreaker(String name, Settings settings, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.settings = settings;
+        this.openNanos = settings.openDuration().toNanos();
+        this.meterRegistry = meterRegistry;
+        this.outcomes = new boolean[Math.max(1, settings.windowSize())];
+        this.rejected = Counter.builder("upstream.circuit.rejected")
+                .tag("name", name)
+                .register(meterRegistry);
+        Gauge.builder("upstream.circuit.state", this, breaker -> breaker.state().ordinal())
+                .tag("name", name)
+                .description("0=closed, 1=half-open, 2=open")
+                .register(meterRegistry);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /**
+     * 是否放行本次调用；返回 false 时调用方应立即降级。
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (now - openedAt < openNanos) {
+                rejected.increment();
+                return false;
+            }
+            transition(State.HALF_OPEN);
+        }
+        // 探测请求长时间没有结果时视为丢失，避免半开状态永远占满
+        if (probesInFlight >= settings.halfOpenProbes() && now - lastProbeAt >= openNanos) {
+            probesInFlight = 0;
+        }
+        if (probesInFlight < settings.halfOpenProbes()) {
+            probesInFlight++;
+            lastProbeAt = now;
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            releaseProbe();
+            probeSuccesses++;
+            if (probeSuccesses >= settings.halfOpenProbes()) {
+                transition(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= settings.minimumCalls()
+                    && failures >= settings.failureRateThreshold() * recorded) {
+                transition(State.OPEN);
+            }
+        }
+    }
+
+    /**
+     * 结束一次结果未知的调用，只归还半开状态的探测名额，不计入统计。
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            releaseProbe();
+        }
+    }
+
+    private void releaseProbe() {
+        if (probesInFlight > 0) {
+            probesInFlight--;
+        }
+    }
+
+    private void record(boolean failure) {
+        if (recorded == outcomes.length) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void transition(State target) {
+        State previous = state;
+        state = target;
+        switch (target) {
+            case OPEN -> {
+                openedAt = System.nanoTime();
+                log.warn("上游 {} 熔断打开（{} -> OPEN），{} 内快速失败", name, previous, settings.openDuration());
+            }
+            case HALF_OPEN -> {
+                probesInFlight = 0;
+                probeSuccesses = 0;
+                log.info("上游 {} 熔断半开，开始探测", name);
+            }
+            case CLOSED -> {
+                next = 0;
+                recorded = 0;
+                failures = 0;
+                log.info("上游 {} 已恢复，熔断关闭", name);
+            }
+        }
+        meterRegistry.counter("upstream.circuit.transitions",
+                        "name", name,
+                        "from", previous.name().toLowerCase(),
+                        "to", target.name().toLowerCase())
+                .increment();
+    }
+}
@@ -0,0 +1,39 @@
+package com.datamining.ssedemo.resilience;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按上游名称共享熔断器，阻塞与响应式协调器使用相同的配置。
+ */
+@Component
+public class CircuitBreakerRegistry {
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final CircuitBreaker.Settings settings;
+    private final MeterRegistry meterRegistry;
+
+    public CircuitBreakerRegistry(MeterRegistry meterRegistry,
+                                  @Value("${external.services.circuit-breaker.window-size:20}") int windowSize,
+                                  @Value("${external.services.circuit-breaker.minimum-calls:5}") int minimumCalls,
+                                  @Value("${external.services.circuit-breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                                  @Value("${external.services.circuit-breaker.open-duration:PT30S}") Duration openDuration,
+                                  @Value("${external.services.circuit-breaker.half-open-probes:2}") int halfOpenProbes) {
+        this.meterRegistry = meterRegistry;
+        this.settings = new CircuitBreaker.Settings(
+                Math.max(1, windowSize),
+                Math.max(1, minimumCalls),
+                failureRateThreshold,
+                openDuration,
+                Math.max(1, halfOpenProbes));
+    }
+
+    public CircuitBreaker breaker(String name) {
+        return breakers.computeIfAbsent(name, key -> new CircuitBreaker(key, settings, meterRegistry));
+    }
+}
@@ -0,0 +1,32 @@
+package com.datamining.ssedemo.resilience;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按键保存最近一次成功获取的数据，上游不可用时作为降级结果；超过容量时淘汰最久未访问的键。
+ */
+public class LastKnownGood<K, V> {
+
+    private final Map<K, V> values;
+
+    public LastKnownGood(int maxEntries) {
+        this.values = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    public void put(K key, V value) {
+        if (key != null && value != null) {
+            values.put(key, value);
+        }
+    }
+
+    public V get(K key) {
+        return key == null ? null : values.get(key);
+    }
+}
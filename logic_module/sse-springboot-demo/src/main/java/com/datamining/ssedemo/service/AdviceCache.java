@@ -0,0 +1,146 @@
+package com.datamining.ssedemo.service;
+
+import com.datamining.ssedemo.cache.SingleFlightCache;
+import com.datamining.ssedemo.dto.CombinedContext;
+import com.datamining.ssedemo.dto.ExtractResult;
+import com.datamining.ssedemo.dto.MarketSnapshot;
+import com.datamining.ssedemo.dto.NewsItem;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * 短 TTL 的建议缓存，键为 {@link CombinedContext} 的量化指纹。
+ * <p>
+ * 指纹由规范化后的用户问题、规范化后的意图（类别与标的排序去重）、新闻 URL 集合，以及按档位量化的行情组成：
+ * 价格按 0.1% 的对数档位、RSI 取整。建议针对用户的原始问题生成，因此只有同一分钟内规范化后相同的问题、
+ * 且行情未明显变化时才命中同一条建议；措辞不同的相近问题由 {@link SemanticAdviceCache} 处理。
+ * 指标：{@code advice.cache.requests}（result=hit|miss）、{@code advice.cache.size}、
+ * {@code advice.cache.saved-tokens}（命中时省下的估算输出 token 数）。
+ */
+@Component
+public class AdviceCache {
+
+    private static final double PRICE_BUCKET = Math.log1p(0.001);
+
+    private final SingleFlightCache<String, String> cache;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final Counter savedTokens;
+
+    public AdviceCache(MeterRegistry meterRegistry,
+                       @Value("${advice.cache.enabled:true}") boolean enabled,
+                       @Value("${advice.cache.max-entries:1024}") int maxEntries,
+                       @Value("${advice.cache.ttl:PT60S}") Duration ttl) {
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.cache = new SingleFlightCache<>("advice.cache", "advice", maxEntries, meterRegistry);
+        this.savedTokens = Counter.builder("advice.cache.saved-tokens")
+                .description("命中建议缓存而省下的估算输出 token 数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 计算上下文的指纹；缓存未启用时返回 null。
+     */
+    public String fingerprint(CombinedContext ctx) {
+        if (!enabled || ctx == null) {
+            return null;
+        }
+        StringBuilder canonical = new StringBuilder(256);
+        canonical.append("q=").append(TextNormalizer.normalize(Objects.toString(ctx.getUserText(), "")));
+        ExtractResult extract = ctx.getExtract();
+        canonical.append("|c=");
+        appendSorted(canonical, extract != null ? extract.getNewsCategories() : null);
+        canonical.append("|p=");
+        appendSorted(canonical, extract != null ? extract.getProducts() : null);
+        canonical.append("|n=");
+        List<String> urls = new ArrayList<>();
+        if (ctx.getNews() != null) {
+            for (NewsItem item : ctx.getNews()) {
+                if (item != null && item.getUrl() != null) {
+                    urls.add(item.getUrl());
+                }
+            }
+        }
+        appendSorted(canonical, urls);
+        canonical.append("|m=");
+        if (ctx.getMarkets() != null) {
+            List<MarketSnapshot> markets = new ArrayList<>(ctx.getMarkets());
+            markets.removeIf(Objects::isNull);
+            markets.sort(Comparator.comparing(m -> Objects.toString(m.getSymbol(), "")));
+            for (MarketSnapshot market : markets) {
+                canonical.append(market.getSymbol())
+                        .append(':').append(priceBucket(market.getLastPrice()))
+                        .append(':').append(Math.round(market.getRsi()))
+                        .append(';');
+            }
+        }
+        return sha256(canonical);
+    }
+
+    public String get(String fingerprint) {
+        if (fingerprint == null) {
+            return null;
+        }
+        String advice = cache.getIfPresent(fingerprint);
+        if (advice != null) {
+            savedTokens.increment(TokenEstimator.estimate(advice));
+        }
+        return advice;
+    }
+
+    public void put(String fingerprint, String advice) {
+        if (fingerprint == null || advice == null || advice.isEmpty()) {
+            return;
+        }
+        cache.put(fingerprint, advice, ttl);
+    }
+
+    private static long priceBucket(double price) {
+        return price > 0 ? Math.round(Math.log(price) / PRICE_BUCKET) : 0;
+    }
+
+    private static void appendSorted(StringBuilder sb, List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        List<String> sorted = new ArrayList<>(values.size());
+        for (String value : values) {
+            if (value != null && !value.isBlank()) {
+                sorted.add(value.strip().toLowerCase(Locale.ROOT));
+            }
+        }
+        Collections.sort(sorted);
+        String previous = null;
+        for (String value : sorted) {
+            if (!value.equals(previous)) {
+                sb.append(value).append(',');
+            }
+            previous = value;
+        }
+    }
+
+    private static String sha256(CharSequence text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(text.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 不可用", ex);
+        }
+    }
+}
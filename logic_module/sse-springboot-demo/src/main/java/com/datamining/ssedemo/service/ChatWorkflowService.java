@@ -4,21 +4,40 @@ import com.datamining.ssedemo.dto.ChatReq;
 import com.datamining.ssedemo.dto.CombinedContext;
 import com.datamining.ssedemo.dto.ExtractResult;
 import com.datamining.ssedemo.dto.MarketSnapshot;
+import com.datamining.ssedemo.dto.MessageVO;
 import com.datamining.ssedemo.dto.NewsItem;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 /**
  * 串联 LLM 与外部服务的主流程服务。
@@ -28,51 +47,410 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @RequiredArgsConstructor
 public class ChatWorkflowService {
 
+    private static final String ADVICE_FAILED = "{\"error\":\"advice generation failed\"}";
+    /**
+     * 回放缓存建议时每个 advice-delta 片段的字符数。
+     */
+    private static final int REPLAY_CHUNK_CHARS = 32;
+
     private final LLMService llmService;
+    private final IntentExtractionService intentExtractionService;
     private final ExternalServiceCoordinator externalServiceCoordinator;
-    private final ObjectMapper objectMapper;
+    /**
+     * 启用 external.services.client=reactive 时存在，并发模式下优先使用，不占用查询线程。
+     */
+    private final ObjectProvider<ReactiveExternalServiceCoordinator> reactiveCoordinatorProvider;
+    private final SseEventEncoder sseEventEncoder;
+    private final WorkflowExecutor workflowExecutor;
+    private final WorkflowMetrics workflowMetrics;
+    private final SpeculativePrefetcher speculativePrefetcher;
+    private final AdviceCache adviceCache;
+    private final SemanticAdviceCache semanticAdviceCache;
+    private final ChatMemory chatMemory;
 
     @Value("${workflow.lookback-hours:24}")
     private long lookbackHours;
 
+    /**
+     * 是否并发查询新闻与行情；关闭后退回到串行执行。
+     */
+    @Value("${workflow.concurrent-fetch:true}")
+    private boolean concurrentFetch;
+
+    /**
+     * 并发模式下等待新闻与行情的最长时间，超时后直接用已到达的数据生成建议。
+     */
+    @Value("${workflow.fetch-deadline:PT10S}")
+    private Duration fetchDeadline;
+
+    /**
+     * 单次请求的总时限，从 process 开始计时，各阶段只使用剩余的时间。
+     */
+    @Value("${workflow.deadline:PT20S}")
+    private Duration requestDeadline;
+
+    /**
+     * 为生成建议预留的时间：抽取与外部查询必须在总时限减去该值之前结束。
+     */
+    @Value("${workflow.advice-reserve:PT8S}")
+    private Duration adviceReserve;
+
+    /**
+     * LLM 支持流式输出时逐段推送 advice-delta，最后再推送完整的 final。
+     */
+    @Value("${workflow.advice-streaming:true}")
+    private boolean adviceStreaming;
+
+    /**
+     * 是否让规范化后文本相同的并发请求共享同一条执行链路。
+     */
+    @Value("${workflow.coalesce.enabled:true}")
+    private boolean coalesceEnabled;
+
+    /**
+     * 正在执行的链路，键为规范化后的用户输入；链路结束时移除。
+     */
+    private final Map<String, Pipeline> inFlight = new ConcurrentHashMap<>();
+
     /**
      * 执行完整链路：意图抽取 -> 外部服务查询 -> LLM 生成建议 -> SSE 事件。
+     * 某个阶段因时限未能完整完成时，对应事件带有 "partial": true。
+     * <p>
+     * 同一时刻规范化文本相同的请求挂到同一条链路上，后到的请求先收到已推送事件的回放，再继续接收后续事件。
+     * 已有会话记忆的请求把记忆窗口（滚动摘要与最近几轮）带进建议提示词，回答依赖各自的历史，因此不参与合并。
+     * 会话记忆在订阅后于弹性线程上读取，不占用调用线程。
+     * 每个请求结束时（正常完成或客户端中途断开，出错除外）各自把问题与已生成的建议写入自己 chatId 的会话记忆。
      */
-    public Flux<String> process(ChatReq req) {
-        return Flux.create(sink -> {
+    public Flux<ServerSentEvent<String>> process(ChatReq req) {
+        String userText = getUserText(req);
+        return Mono.fromCallable(() -> loadHistory(req.getChatId()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(history -> process(req, userText, history));
+    }
+
+    private Flux<ServerSentEvent<String>> process(ChatReq req, String userText, List<MessageVO> history) {
+        String key = coalesceEnabled && history.isEmpty() ? TextNormalizer.normalize(userText) : "";
+        if (key.isEmpty()) {
+            AdviceProgress advice = new AdviceProgress();
+            return run(req, userText, history, advice)
+                    .doFinally(signal -> recordOnFinish(signal, req.getChatId(), userText, advice));
+        }
+        Pipeline candidate = new Pipeline();
+        candidate.events = run(req, userText, history, candidate.advice)
+                .doFinally(signal -> inFlight.remove(key, candidate))
+                .cache();
+        Pipeline existing = inFlight.putIfAbsent(key, candidate);
+        Pipeline pipeline = existing != null ? existing : candidate;
+        workflowMetrics.recordCoalesced(existing == null);
+        return pipeline.events
+                .doFinally(signal -> recordOnFinish(signal, req.getChatId(), userText, pipeline.advice));
+    }
+
+    private Flux<ServerSentEvent<String>> run(ChatReq req,
+                                              String userText,
+                                              List<MessageVO> history,
+                                              AdviceProgress finalAdviceHolder) {
+        Flux<SseEventEncoder.Frame> frames = workflowExecutor.execute(Flux.<SseEventEncoder.Frame>create(sink -> {
             AtomicBoolean finished = new AtomicBoolean(false);
+            Deadline deadline = Deadline.after(requestDeadline);
+            Deadline dataDeadline = deadline.minus(adviceReserve);
             try {
-                String userText = getUserText(req);
-                ExtractResult extract = llmService.extract(userText);
-                sink.next(event("extract", extract));
-
                 Duration lookback = Duration.ofHours(lookbackHours);
-                List<NewsItem> news = externalServiceCoordinator.fetchNews(extract, lookback);
-                sink.next(event("news", news));
+                // 并发模式下在抽取期间就按原始输入推测标的并提前查询
+                SpeculativePrefetcher.Speculation speculation = concurrentFetch
+                        ? speculativePrefetcher.speculate(userText,
+                                guess -> fetchNewsAsync(guess, lookback, dataDeadline),
+                                guess -> fetchMarketAsync(guess, lookback, dataDeadline))
+                        : null;
+                // 类别与标的确定后立即推送 extract 并开始查询，reasoning 以 extract-reasoning 继续推送
+                ExtractResult extract = intentExtractionService.extract(userText, dataDeadline,
+                        intent -> sink.next(event("extract", intent, dataDeadline.isExpired())),
+                        delta -> sink.next(event("extract-reasoning", delta)));
 
-                List<MarketSnapshot> markets = externalServiceCoordinator.fetchMarket(extract, lookback);
-                sink.next(event("market", markets));
+                FetchResult fetched = concurrentFetch
+                        ? fetchConcurrently(sink, extract, speculation, dataDeadline)
+                        : fetchSequentially(sink, extract, lookback, dataDeadline);
 
-                CombinedContext ctx = buildContext(req, userText, extract, news, markets);
-                String finalAdvice = llmService.finalAdvice(ctx);
-                sink.next(event("final", finalAdvice));
-                completeOnce(sink, finished);
+                CombinedContext ctx = buildContext(req, userText, history, extract, fetched.news(), fetched.markets());
+                // 只有数据完整、且不依赖会话历史的上下文才参与建议缓存
+                String fingerprint = fetched.partial() || dataDeadline.isExpired() || !history.isEmpty()
+                        ? null
+                        : adviceCache.fingerprint(ctx);
+                String cachedAdvice = adviceCache.get(fingerprint);
+                if (cachedAdvice == null && fingerprint != null) {
+                    // 精确指纹未命中时再按问题语义与行情状态查找
+                    cachedAdvice = semanticAdviceCache.find(ctx);
+                }
+                if (cachedAdvice != null) {
+                    replayAdvice(sink, cachedAdvice, finalAdviceHolder, finished);
+                } else if (adviceStreaming && llmService.supportsStreaming()) {
+                    streamAdvice(sink, ctx, deadline, fingerprint, finalAdviceHolder, finished);
+                } else {
+                    long startedAt = System.nanoTime();
+                    String finalAdvice = llmService.finalAdvice(ctx, deadline);
+                    workflowMetrics.recordAdvice(startedAt, false);
+                    boolean partial = deadline.isExpired();
+                    if (!partial && !ADVICE_FAILED.equals(finalAdvice)) {
+                        rememberAdvice(fingerprint, ctx, finalAdvice);
+                    }
+                    finalAdviceHolder.finalAdvice = finalAdvice;
+                    sink.next(event("final", finalAdvice, partial));
+                    completeOnce(sink, finished);
+                }
             } catch (Exception ex) {
                 log.error("工作流处理失败", ex);
                 sink.next(event("error", Map.of("message", Objects.toString(ex.getMessage(), "unknown error"))));
                 completeOnce(sink, finished);
             }
-        }, FluxSink.OverflowStrategy.BUFFER);
+        }, FluxSink.OverflowStrategy.BUFFER));
+        // 按推送顺序编号，合并的请求回放同一批事件，因而看到相同的 id
+        return frames.index((index, frame) -> sseEventEncoder.toEvent(index + 1, frame));
+    }
+
+    /**
+     * 流式生成建议：每个片段作为 advice-delta 推送，结束时推送拼接后的 final 并关闭事件流；
+     * 到达总时限时 LLM 停止生成，final 只包含已生成的部分。完整生成的建议按 fingerprint 写入建议缓存。
+     * 该方法立即返回，事件流由 LLM 回调线程完成。
+     */
+    private void streamAdvice(FluxSink<SseEventEncoder.Frame> sink,
+                              CombinedContext ctx,
+                              Deadline deadline,
+                              String fingerprint,
+                              AdviceProgress finalAdviceHolder,
+                              AtomicBoolean finished) {
+        long startedAt = System.nanoTime();
+        AtomicBoolean firstChunk = new AtomicBoolean(false);
+        StringBuffer advice = finalAdviceHolder.streamed;
+        llmService.streamAdvice(ctx, deadline, chunk -> {
+            if (chunk == null || chunk.isEmpty()) {
+                return;
+            }
+            if (firstChunk.compareAndSet(false, true)) {
+                workflowMetrics.recordFirstToken(startedAt);
+            }
+            advice.append(chunk);
+            sink.next(event("advice-delta", chunk));
+        }, () -> {
+            workflowMetrics.recordAdvice(startedAt, true);
+            boolean partial = deadline.isExpired();
+            if (!partial && advice.length() > 0) {
+                rememberAdvice(fingerprint, ctx, advice.toString());
+            }
+            String finalAdvice = advice.length() > 0 ? advice.toString() : ADVICE_FAILED;
+            finalAdviceHolder.finalAdvice = finalAdvice;
+            sink.next(event("final", finalAdvice, partial));
+            completeOnce(sink, finished);
+        });
+    }
+
+    /**
+     * 写入精确与语义两级建议缓存；fingerprint 为 null 说明上下文不完整，不缓存。
+     */
+    private void rememberAdvice(String fingerprint, CombinedContext ctx, String advice) {
+        if (fingerprint == null) {
+            return;
+        }
+        adviceCache.put(fingerprint, advice);
+        semanticAdviceCache.put(ctx, advice);
+    }
+
+    /**
+     * 以与实时生成相同的事件序列回放缓存的建议：若干 advice-delta，随后是 final 与 done。
+     */
+    private void replayAdvice(FluxSink<SseEventEncoder.Frame> sink,
+                              String advice,
+                              AdviceProgress finalAdviceHolder,
+                              AtomicBoolean finished) {
+        for (int start = 0; start < advice.length(); ) {
+            int end = Math.min(advice.length(), start + REPLAY_CHUNK_CHARS);
+            if (end < advice.length() && Character.isHighSurrogate(advice.charAt(end - 1))) {
+                end--;
+            }
+            sink.next(event("advice-delta", advice.substring(start, end)));
+            start = end;
+        }
+        finalAdviceHolder.finalAdvice = advice;
+        sink.next(event("final", advice));
+        completeOnce(sink, finished);
+    }
+
+    private FetchResult fetchSequentially(FluxSink<SseEventEncoder.Frame> sink, ExtractResult extract, Duration lookback, Deadline deadline) {
+        List<NewsItem> news = externalServiceCoordinator.fetchNews(extract, lookback, deadline);
+        sink.next(event("news", news, deadline.isExpired()));
+
+        List<MarketSnapshot> markets = externalServiceCoordinator.fetchMarket(extract, lookback, deadline);
+        sink.next(event("market", markets, deadline.isExpired()));
+        return new FetchResult(news, markets, deadline.isExpired());
+    }
+
+    /**
+     * 新闻与行情同时发起，哪个先返回就先推送对应事件；两者都完成、或到达 fetch-deadline 与请求时限中较早者后返回。
+     * 超时未返回的阶段以空列表推送并标记为部分结果，之后迟到的结果直接丢弃。
+     * 与抽取结果一致的推测查询会被直接复用，见 {@link SpeculativePrefetcher}。
+     */
+    private FetchResult fetchConcurrently(FluxSink<SseEventEncoder.Frame> sink,
+                                          ExtractResult extract,
+                                          SpeculativePrefetcher.Speculation speculation,
+                                          Deadline deadline) {
+        AtomicBoolean newsEmitted = new AtomicBoolean(false);
+        AtomicBoolean marketEmitted = new AtomicBoolean(false);
+
+        CompletableFuture<List<NewsItem>> newsFuture = speculation.news(extract);
+        CompletableFuture<List<MarketSnapshot>> marketFuture = speculation.market(extract);
+        newsFuture.thenAccept(news -> emitOnce(sink, newsEmitted, "news", news));
+        marketFuture.thenAccept(markets -> emitOnce(sink, marketEmitted, "market", markets));
+
+        Duration wait = deadline.cap(fetchDeadline);
+        try {
+            CompletableFuture.allOf(newsFuture, marketFuture).get(wait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            log.warn("外部服务在 {} 内未全部返回，使用已到达的数据继续", wait);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.warn("等待外部服务时被中断");
+        } catch (ExecutionException ex) {
+            log.error("等待外部服务失败", ex);
+        }
+
+        boolean partial = !newsFuture.isDone() || !marketFuture.isDone();
+        List<NewsItem> news = settle(sink, newsEmitted, "news", newsFuture);
+        List<MarketSnapshot> markets = settle(sink, marketEmitted, "market", marketFuture);
+        // 超时未完成的查询不再需要，取消以释放线程
+        newsFuture.cancel(true);
+        marketFuture.cancel(true);
+        return new FetchResult(news, markets, partial);
+    }
+
+    private CompletableFuture<List<NewsItem>> fetchNewsAsync(ExtractResult extract, Duration lookback, Deadline deadline) {
+        ReactiveExternalServiceCoordinator reactiveCoordinator = reactiveCoordinatorProvider.getIfAvailable();
+        return withFallback(reactiveCoordinator != null
+                ? reactiveCoordinator.fetchNews(extract, lookback, deadline).defaultIfEmpty(Collections.emptyList()).toFuture()
+                : submitFetch(() -> externalServiceCoordinator.fetchNews(extract, lookback, deadline)), "并发获取新闻失败");
+    }
+
+    private CompletableFuture<List<MarketSnapshot>> fetchMarketAsync(ExtractResult extract, Duration lookback, Deadline deadline) {
+        ReactiveExternalServiceCoordinator reactiveCoordinator = reactiveCoordinatorProvider.getIfAvailable();
+        return withFallback(reactiveCoordinator != null
+                ? reactiveCoordinator.fetchMarket(extract, lookback, deadline).collectList().toFuture()
+                : submitFetch(() -> externalServiceCoordinator.fetchMarket(extract, lookback, deadline)), "并发获取行情失败");
+    }
+
+    /**
+     * 在工作流的查询线程池上执行阻塞查询；返回的 future 被取消时中断正在执行的查询，线程池拒绝时以异常结束。
+     */
+    private <T> CompletableFuture<T> submitFetch(Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running;
+        try {
+            running = workflowExecutor.fetchExecutor().submit(() -> {
+                try {
+                    result.complete(task.get());
+                } catch (Throwable ex) {
+                    result.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            result.completeExceptionally(ex);
+            return result;
+        }
+        result.whenComplete((value, ex) -> {
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 失败时返回空列表；返回的 future 被取消时一并取消底层查询。
+     */
+    private <T> CompletableFuture<List<T>> withFallback(CompletableFuture<List<T>> source, String failureMessage) {
+        CompletableFuture<List<T>> result = source.exceptionally(ex -> {
+            log.error(failureMessage, ex);
+            return Collections.emptyList();
+        });
+        result.whenComplete((value, ex) -> {
+            if (result.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 确定某个阶段最终参与生成建议的数据，并保证推送给前端的事件与之一致：
+     * 先读取当前结果再抢占推送标记，抢到时按读取到的结果推送；未完成时推送空列表并标记为部分结果。
+     */
+    private <T> List<T> settle(FluxSink<SseEventEncoder.Frame> sink, AtomicBoolean flag, String type, CompletableFuture<List<T>> future) {
+        List<T> value = future.getNow(null);
+        if (flag.compareAndSet(false, true)) {
+            List<T> result = value == null ? Collections.emptyList() : value;
+            sink.next(event(type, result, value == null));
+            return result;
+        }
+        // 标记已被完成回调抢占，说明结果已经就绪
+        return future.getNow(Collections.emptyList());
+    }
+
+    private void emitOnce(FluxSink<SseEventEncoder.Frame> sink, AtomicBoolean flag, String type, Object data) {
+        if (flag.compareAndSet(false, true)) {
+            sink.next(event(type, data));
+        }
+    }
+
+    /**
+     * 事件流结束时记录本轮对话：正常完成与客户端断开都记录已生成的建议，出错时不记录。
+     */
+    private void recordOnFinish(SignalType signal, String chatId, String userText, AdviceProgress advice) {
+        if (signal != SignalType.ON_ERROR) {
+            recordHistory(chatId, userText, advice.current());
+        }
+    }
+
+    /**
+     * 把本轮问题与建议写入该 chatId 的会话记忆；建议生成失败时只记录问题。
+     */
+    private void recordHistory(String chatId, String userText, String advice) {
+        if (!StringUtils.hasText(chatId) || !StringUtils.hasText(userText)) {
+            return;
+        }
+        List<Message> messages = new ArrayList<>(2);
+        messages.add(new UserMessage(userText));
+        if (StringUtils.hasText(advice) && !ADVICE_FAILED.equals(advice)) {
+            messages.add(new AssistantMessage(advice));
+        }
+        try {
+            chatMemory.add(chatId, messages);
+        } catch (Exception ex) {
+            log.warn("写入会话 {} 的记忆失败", chatId, ex);
+        }
+    }
+
+    /**
+     * 读取该 chatId 当前的记忆窗口；没有 chatId 或读取失败时按新会话处理。
+     */
+    private List<MessageVO> loadHistory(String chatId) {
+        if (!StringUtils.hasText(chatId)) {
+            return Collections.emptyList();
+        }
+        try {
+            return chatMemory.get(chatId).stream().map(MessageVO::new).toList();
+        } catch (Exception ex) {
+            log.warn("读取会话 {} 的记忆失败", chatId, ex);
+            return Collections.emptyList();
+        }
     }
 
     private CombinedContext buildContext(ChatReq req,
                                          String userText,
+                                         List<MessageVO> history,
                                          ExtractResult extract,
                                          List<NewsItem> news,
                                          List<MarketSnapshot> markets) {
         CombinedContext ctx = new CombinedContext();
         ctx.setUserId(req.getChatId());
         ctx.setUserText(userText);
+        ctx.setHistory(history);
         ctx.setExtract(extract);
         ctx.setNews(news);
         ctx.setMarkets(markets);
@@ -86,20 +464,46 @@ public class ChatWorkflowService {
         return req.getMessage();
     }
 
-    private void completeOnce(FluxSink<String> sink, AtomicBoolean flag) {
+    private void completeOnce(FluxSink<SseEventEncoder.Frame> sink, AtomicBoolean flag) {
         if (flag.compareAndSet(false, true)) {
             sink.next(event("done", null));
-            sink.next("[DONE]");
+            sink.next(sseEventEncoder.done());
             sink.complete();
         }
     }
 
-    private String event(String type, Object data) {
-        ObjectNode root = objectMapper.createObjectNode();
-        root.put("type", type);
-        if (data != null) {
-            root.set("data", objectMapper.valueToTree(data));
+    private SseEventEncoder.Frame event(String type, Object data) {
+        return event(type, data, false);
+    }
+
+    /**
+     * 部分结果额外带 "partial": true。
+     */
+    private SseEventEncoder.Frame event(String type, Object data, boolean partial) {
+        return sseEventEncoder.encode(type, data, partial);
+    }
+
+    /**
+     * 一条可被多个请求共享的执行链路：events 缓存并回放全部事件，advice 为已生成的建议。
+     */
+    private static final class Pipeline {
+        private final AdviceProgress advice = new AdviceProgress();
+        private Flux<ServerSentEvent<String>> events;
+    }
+
+    /**
+     * 本轮建议的进度：流式生成时逐段累积在 streamed 中，结束时 finalAdvice 为最终推送的建议。
+     */
+    private static final class AdviceProgress {
+        private final StringBuffer streamed = new StringBuffer();
+        private volatile String finalAdvice;
+
+        private String current() {
+            String done = finalAdvice;
+            return done != null ? done : streamed.toString();
         }
-        return root.toString();
+    }
+
+    private record FetchResult(List<NewsItem> news, List<MarketSnapshot> markets, boolean partial) {
     }
 }
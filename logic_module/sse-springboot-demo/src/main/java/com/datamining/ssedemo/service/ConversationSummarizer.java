@@ -0,0 +1,110 @@
+package com.datamining.ssedemo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在后台线程上把移出记忆窗口的旧对话折叠进滚动摘要，不占用请求线程。
+ * 模型不可用或返回空内容时退回本地截断：保留已有摘要并拼接新对话的开头部分。
+ */
+@Slf4j
+@Component
+public class ConversationSummarizer {
+
+    private static final int LOCAL_SNIPPET_CHARS = 60;
+
+    private final LLMService llmService;
+    private final int maxChars;
+    private final ThreadPoolExecutor executor;
+
+    private final Counter llmSummaries;
+    private final Counter localSummaries;
+    private final Timer latency;
+
+    public ConversationSummarizer(LLMService llmService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${chat.memory.summary.max-chars:400}") int maxChars,
+                                  @Value("${chat.memory.summary.threads:2}") int threads,
+                                  @Value("${chat.memory.summary.queue-size:1000}") int queueSize) {
+        this.llmService = llmService;
+        this.maxChars = Math.max(50, maxChars);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("memory-summary-");
+        threadFactory.setDaemon(true);
+        int poolSize = Math.max(1, threads);
+        // 队列满时直接拒绝，调用方保留待摘要的消息，下一轮再合并
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), threadFactory);
+
+        this.llmSummaries = Counter.builder("chat.memory.summary.requests").tag("source", "llm")
+                .description("由模型生成的对话摘要次数").register(meterRegistry);
+        this.localSummaries = Counter.builder("chat.memory.summary.requests").tag("source", "local")
+                .description("退回本地截断生成的对话摘要次数").register(meterRegistry);
+        this.latency = Timer.builder("chat.memory.summary.latency")
+                .description("一次后台摘要的耗时")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 异步生成新摘要；线程池队列已满时抛出 RejectedExecutionException。
+     */
+    public CompletableFuture<String> summarize(String previousSummary, List<Message> turns) {
+        return CompletableFuture.supplyAsync(() -> latency.record(() -> doSummarize(previousSummary, turns)), executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private String doSummarize(String previousSummary, List<Message> turns) {
+        String summary = llmService.summarizeConversation(previousSummary, transcript(turns), maxChars);
+        if (StringUtils.hasText(summary)) {
+            llmSummaries.increment();
+            return clip(summary.trim());
+        }
+        localSummaries.increment();
+        StringBuilder local = new StringBuilder();
+        if (StringUtils.hasText(previousSummary)) {
+            local.append(previousSummary).append('\n');
+        }
+        for (Message message : turns) {
+            String text = message.getText() == null ? "" : message.getText();
+            local.append(roleOf(message)).append('：')
+                    .append(text, 0, Math.min(text.length(), LOCAL_SNIPPET_CHARS)).append('\n');
+        }
+        // 本地降级时更近的对话更重要，超长时保留结尾
+        String merged = local.toString().trim();
+        return merged.length() <= maxChars ? merged : merged.substring(merged.length() - maxChars);
+    }
+
+    private String clip(String summary) {
+        return summary.length() <= maxChars ? summary : summary.substring(0, maxChars);
+    }
+
+    private static String transcript(List<Message> turns) {
+        StringBuilder sb = new StringBuilder();
+        for (Message message : turns) {
+            sb.append(roleOf(message)).append('：').append(message.getText()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String roleOf(Message message) {
+        return message.getMessageType() == MessageType.ASSISTANT ? "助手" : "用户";
+    }
+}
@@ -0,0 +1,51 @@
+package com.datamining.ssedemo.service;
+
+import java.time.Duration;
+
+/**
+ * 一次请求的截止时间，基于单调时钟。各阶段按剩余时间而不是各自固定的超时来安排等待。
+ */
+public final class Deadline {
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos());
+    }
+
+    /**
+     * 剩余时间，已过期时为零。
+     */
+    public Duration remaining() {
+        long left = deadlineNanos - System.nanoTime();
+        return left > 0 ? Duration.ofNanos(left) : Duration.ZERO;
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * 提前 reserve 到期的截止时间，用于给后续阶段预留时间。
+     */
+    public Deadline minus(Duration reserve) {
+        return new Deadline(deadlineNanos - reserve.toNanos());
+    }
+
+    /**
+     * 固定超时与剩余时间中较小的一个。
+     */
+    public Duration cap(Duration timeout) {
+        Duration left = remaining();
+        return timeout.compareTo(left) < 0 ? timeout : left;
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline(remaining=" + remaining() + ")";
+    }
+}
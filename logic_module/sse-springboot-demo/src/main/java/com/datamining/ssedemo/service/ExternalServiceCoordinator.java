@@ -10,4 +10,18 @@ import java.util.List;
 public interface ExternalServiceCoordinator {
     List<NewsItem> fetchNews(ExtractResult extract, Duration lookback);
     List<MarketSnapshot> fetchMarket(ExtractResult extract, Duration lookback);
+
+    /**
+     * 等待不超过截止时间；默认实现忽略截止时间。
+     */
+    default List<NewsItem> fetchNews(ExtractResult extract, Duration lookback, Deadline deadline) {
+        return fetchNews(extract, lookback);
+    }
+
+    /**
+     * 截止时间之前未返回的标的被跳过；默认实现忽略截止时间。
+     */
+    default List<MarketSnapshot> fetchMarket(ExtractResult extract, Duration lookback, Deadline deadline) {
+        return fetchMarket(extract, lookback);
+    }
 }
@@ -0,0 +1,214 @@
+package com.datamining.ssedemo.service;
+
+import com.datamining.ssedemo.cache.SingleFlightCache;
+import com.datamining.ssedemo.dto.ExtractResult;
+import com.datamining.ssedemo.intent.LocalIntentExtractor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 在 {@link LLMService#extract} 之上按规范化后的用户输入缓存意图抽取结果，命中时完全跳过 LLM 调用。
+ * <p>
+ * 查缓存之前先用 {@link LocalIntentExtractor} 做本地词典匹配，置信度达到 {@code intent.local.min-confidence}
+ * 时直接返回本地结果，只有本地无法确定时才调用 LLM。
+ * <p>
+ * 相同输入的并发请求共享同一次抽取。超时的结果和既无类别也无标的的结果不写入缓存。
+ * 缓存中的 {@link ExtractResult} 会被多个请求共享，调用方不应修改它。
+ * 指标：{@code intent.cache.requests}（result=hit|miss|coalesced）、{@code intent.cache.evictions}、{@code intent.cache.size}，
+ * 以及本地抽取的命中情况 {@code intent.local.requests}（result=hit|fallback）。
+ */
+@Slf4j
+@Service
+public class IntentExtractionService {
+
+    private final LLMService llmService;
+    private final LocalIntentExtractor localExtractor;
+    private final SingleFlightCache<String, ExtractResult> cache;
+    private final boolean cacheEnabled;
+    private final Duration ttl;
+    private final boolean localEnabled;
+    private final double localMinConfidence;
+    private final Counter localHits;
+    private final Counter localFallbacks;
+
+    public IntentExtractionService(LLMService llmService,
+                                   LocalIntentExtractor localExtractor,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${intent.cache.enabled:true}") boolean cacheEnabled,
+                                   @Value("${intent.cache.max-entries:4096}") int maxEntries,
+                                   @Value("${intent.cache.ttl:PT10M}") Duration ttl,
+                                   @Value("${intent.local.enabled:true}") boolean localEnabled,
+                                   @Value("${intent.local.min-confidence:0.8}") double localMinConfidence) {
+        this.llmService = llmService;
+        this.localExtractor = localExtractor;
+        this.cacheEnabled = cacheEnabled;
+        this.ttl = ttl;
+        this.localEnabled = localEnabled;
+        this.localMinConfidence = localMinConfidence;
+        this.cache = new SingleFlightCache<>("intent.cache", "extract", maxEntries, meterRegistry);
+        this.localHits = localCounter("hit", meterRegistry);
+        this.localFallbacks = localCounter("fallback", meterRegistry);
+    }
+
+    public ExtractResult extract(String userText, Deadline deadline) {
+        ExtractResult local = extractLocally(userText);
+        if (local != null) {
+            return local;
+        }
+        String key = TextNormalizer.normalize(userText);
+        if (!cacheEnabled || key.isEmpty()) {
+            return llmService.extract(userText, deadline);
+        }
+        AtomicReference<ExtractResult> loaded = new AtomicReference<>();
+        CompletableFuture<ExtractResult> future = cache.get(key, ttl, () -> {
+            ExtractResult result = llmService.extract(userText, deadline);
+            loaded.set(result);
+            return CompletableFuture.completedFuture(cacheable(result, deadline) ? result : null);
+        });
+        if (loaded.get() != null) {
+            return loaded.get();
+        }
+        try {
+            ExtractResult shared = future.get(deadline.remaining().toMillis(), TimeUnit.MILLISECONDS);
+            if (shared != null) {
+                return shared;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            log.debug("等待共享的意图抽取结果失败，改为直接抽取", ex);
+        }
+        return llmService.extract(userText, deadline);
+    }
+
+    /**
+     * 流式抽取：类别与标的确定后即回调 onIntent 并返回，不等待 reasoning 生成完；
+     * reasoning 的后续片段在 LLM 线程上回调 onReasoning。onIntent 恰好调用一次，且先于任何 onReasoning。
+     * 本地词典或缓存命中时返回的结果已经包含完整 reasoning，不会回调 onReasoning。
+     * 缓存中只写入 reasoning 完整生成的结果。
+     */
+    public ExtractResult extract(String userText,
+                                 Deadline deadline,
+                                 Consumer<ExtractResult> onIntent,
+                                 Consumer<String> onReasoning) {
+        IntentRelay relay = new IntentRelay(onIntent, onReasoning);
+        ExtractResult local = extractLocally(userText);
+        if (local != null) {
+            return relay.intent(local, false);
+        }
+        String key = TextNormalizer.normalize(userText);
+        if (!cacheEnabled || key.isEmpty()) {
+            llmService.extract(userText, deadline, intent -> relay.intent(intent, true), relay::reasoning, result -> {
+            });
+            return relay.await(deadline);
+        }
+        AtomicBoolean loading = new AtomicBoolean(false);
+        CompletableFuture<ExtractResult> future = cache.get(key, ttl, () -> {
+            loading.set(true);
+            CompletableFuture<ExtractResult> loaded = new CompletableFuture<>();
+            llmService.extract(userText, deadline, intent -> relay.intent(intent, true), relay::reasoning,
+                    result -> loaded.complete(cacheable(result, deadline) ? result : null));
+            return loaded;
+        });
+        if (loading.get()) {
+            return relay.await(deadline);
+        }
+        try {
+            ExtractResult shared = future.get(deadline.remaining().toMillis(), TimeUnit.MILLISECONDS);
+            if (shared != null) {
+                return relay.intent(shared, false);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            log.debug("等待共享的意图抽取结果失败，改为直接抽取", ex);
+        }
+        llmService.extract(userText, deadline, intent -> relay.intent(intent, true), relay::reasoning, result -> {
+        });
+        return relay.await(deadline);
+    }
+
+    /**
+     * 本地词典的置信度达到阈值时返回本地结果，否则返回 null。
+     */
+    private ExtractResult extractLocally(String userText) {
+        if (!localEnabled) {
+            return null;
+        }
+        LocalIntentExtractor.Extraction local = localExtractor.extract(userText);
+        if (local.result() != null && local.confidence() >= localMinConfidence) {
+            localHits.increment();
+            return local.result();
+        }
+        localFallbacks.increment();
+        return null;
+    }
+
+    private static Counter localCounter(String result, MeterRegistry meterRegistry) {
+        return Counter.builder("intent.local.requests")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static boolean cacheable(ExtractResult result, Deadline deadline) {
+        if (result == null || deadline.isExpired()) {
+            return false;
+        }
+        boolean hasCategories = result.getNewsCategories() != null && !result.getNewsCategories().isEmpty();
+        boolean hasProducts = result.getProducts() != null && !result.getProducts().isEmpty();
+        return hasCategories || hasProducts;
+    }
+
+    /**
+     * 保证 onIntent 只调用一次：超时后以降级结果回调，之后 LLM 迟到的意图与 reasoning 都被丢弃。
+     */
+    private static final class IntentRelay {
+        private final Consumer<ExtractResult> onIntent;
+        private final Consumer<String> onReasoning;
+        private final CompletableFuture<ExtractResult> intent = new CompletableFuture<>();
+        private volatile boolean streaming;
+
+        private IntentRelay(Consumer<ExtractResult> onIntent, Consumer<String> onReasoning) {
+            this.onIntent = onIntent;
+            this.onReasoning = onReasoning;
+        }
+
+        private synchronized ExtractResult intent(ExtractResult result, boolean fromStream) {
+            if (intent.isDone()) {
+                return intent.join();
+            }
+            streaming = fromStream;
+            onIntent.accept(result);
+            intent.complete(result);
+            return result;
+        }
+
+        private void reasoning(String delta) {
+            if (streaming) {
+                onReasoning.accept(delta);
+            }
+        }
+
+        private ExtractResult await(Deadline deadline) {
+            try {
+                return intent.get(deadline.remaining().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (Exception ex) {
+                log.warn("意图抽取在 {} 内未返回类别与标的，使用降级结果", deadline);
+            }
+            return intent(new ExtractResult(Collections.emptyList(), Collections.emptyList(), "fallback"), false);
+        }
+    }
+}
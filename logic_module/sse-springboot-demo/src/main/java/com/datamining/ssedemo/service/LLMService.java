@@ -9,4 +9,48 @@ public interface LLMService {
     boolean supportsStreaming();
     void streamAdvice(CombinedContext ctx, Consumer<String> onChunk, Runnable onDone);
     String finalAdvice(CombinedContext ctx);
+
+    /**
+     * 在截止时间之前完成抽取，超时返回降级结果；默认实现忽略截止时间。
+     */
+    default ExtractResult extract(String userText, Deadline deadline) {
+        return extract(userText);
+    }
+
+    /**
+     * 流式抽取：newsCategories 与 products 都确定后立即回调 onIntent（此时 reasoning 可能仍在生成），
+     * 之后 reasoning 的新增片段逐段回调 onReasoning，全部结束后以完整结果回调 onDone。
+     * onIntent 与 onDone 各保证恰好调用一次，且 onIntent 先于任何 onReasoning；默认实现在完整抽取后依次回调。
+     */
+    default void extract(String userText,
+                         Deadline deadline,
+                         Consumer<ExtractResult> onIntent,
+                         Consumer<String> onReasoning,
+                         Consumer<ExtractResult> onDone) {
+        ExtractResult result = extract(userText, deadline);
+        onIntent.accept(result);
+        onDone.accept(result);
+    }
+
+    /**
+     * 到达截止时间时停止生成并调用 onDone，已推送的片段即为部分结果；默认实现忽略截止时间。
+     */
+    default void streamAdvice(CombinedContext ctx, Deadline deadline, Consumer<String> onChunk, Runnable onDone) {
+        streamAdvice(ctx, onChunk, onDone);
+    }
+
+    /**
+     * 到达截止时间时返回已生成的部分内容；默认实现忽略截止时间。
+     */
+    default String finalAdvice(CombinedContext ctx, Deadline deadline) {
+        return finalAdvice(ctx);
+    }
+
+    /**
+     * 把已有的对话摘要与新移出窗口的对话记录合并为一段不超过 maxChars 字的新摘要。
+     * 默认不支持，返回 null，由调用方在本地降级。
+     */
+    default String summarizeConversation(String previousSummary, String transcript, int maxChars) {
+        return null;
+    }
 }
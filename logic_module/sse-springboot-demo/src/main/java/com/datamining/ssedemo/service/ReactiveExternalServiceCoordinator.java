@@ -0,0 +1,37 @@
+package com.datamining.ssedemo.service;
+
+import com.datamining.ssedemo.dto.ExtractResult;
+import com.datamining.ssedemo.dto.MarketSnapshot;
+import com.datamining.ssedemo.dto.NewsItem;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 非阻塞版本的外部服务协调器，等待上游期间不占用线程。
+ * 失败时与 {@link ExternalServiceCoordinator} 一致地降级为空结果，不向下游抛出异常。
+ */
+public interface ReactiveExternalServiceCoordinator {
+    Mono<List<NewsItem>> fetchNews(ExtractResult extract, Duration lookback);
+
+    /**
+     * 按 products 的顺序逐个发出行情快照，缺少 ticker 的标的会被跳过。
+     */
+    Flux<MarketSnapshot> fetchMarket(ExtractResult extract, Duration lookback);
+
+    /**
+     * 等待不超过截止时间；默认实现忽略截止时间。
+     */
+    default Mono<List<NewsItem>> fetchNews(ExtractResult extract, Duration lookback, Deadline deadline) {
+        return fetchNews(extract, lookback);
+    }
+
+    /**
+     * 截止时间之前未返回的标的被跳过；默认实现忽略截止时间。
+     */
+    default Flux<MarketSnapshot> fetchMarket(ExtractResult extract, Duration lookback, Deadline deadline) {
+        return fetchMarket(extract, lookback);
+    }
+}
@@ -0,0 +1,227 @@
+package com.datamining.ssedemo.service;
+
+import com.datamining.ssedemo.cache.LshIndex;
+import com.datamining.ssedemo.cache.LshIndex.SparseVector;
+import com.datamining.ssedemo.dto.CombinedContext;
+import com.datamining.ssedemo.dto.MarketSnapshot;
+import com.datamining.ssedemo.intent.LocalIntentExtractor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 语义建议缓存：措辞不同但意思相近的问题，在行情状态接近时复用已生成的建议。
+ * <p>
+ * 问题向量在本地计算：去掉交易对别名后，取字符 1~3 元组做特征哈希投影到固定维度并 L2 归一化，不依赖外部服务。
+ * 向量按标的集合分区存入 {@link LshIndex}，查询时只比较同一个哈希桶里标的集合相同的候选，过期条目在写入时从最旧处清理。命中需要同时满足：
+ * 余弦相似度不低于 min-similarity；标的集合相同；每个标的的价格相对偏差不超过 price-tolerance、RSI 偏差不超过 rsi-tolerance；
+ * 条目未超过 TTL。
+ * 指标：{@code advice.semantic-cache.requests}（result=hit|miss）、{@code advice.semantic-cache.lookup}、{@code advice.semantic-cache.size}。
+ */
+@Component
+public class SemanticAdviceCache {
+
+    private static final long INDEX_SEED = 42L;
+    private static final float UNIGRAM_WEIGHT = 0.5f;
+
+    private final LocalIntentExtractor localExtractor;
+    private final boolean enabled;
+    private final int dimension;
+    private final double minSimilarity;
+    private final double priceTolerance;
+    private final double rsiTolerance;
+    private final Duration ttl;
+    private final LshIndex<Entry> index;
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer lookup;
+
+    public SemanticAdviceCache(LocalIntentExtractor localExtractor,
+                               MeterRegistry meterRegistry,
+                               @Value("${advice.semantic-cache.enabled:true}") boolean enabled,
+                               @Value("${advice.semantic-cache.max-entries:100000}") int maxEntries,
+                               @Value("${advice.semantic-cache.ttl:PT60S}") Duration ttl,
+                               @Value("${advice.semantic-cache.dimension:1024}") int dimension,
+                               @Value("${advice.semantic-cache.tables:8}") int tables,
+                               @Value("${advice.semantic-cache.bits-per-table:10}") int bitsPerTable,
+                               @Value("${advice.semantic-cache.min-similarity:0.85}") double minSimilarity,
+                               @Value("${advice.semantic-cache.price-tolerance:0.005}") double priceTolerance,
+                               @Value("${advice.semantic-cache.rsi-tolerance:3}") double rsiTolerance) {
+        this.localExtractor = localExtractor;
+        this.enabled = enabled;
+        // 维度取 2 的幂，哈希值直接按位与取下标
+        this.dimension = Integer.highestOneBit(Math.max(16, dimension) - 1) << 1;
+        this.minSimilarity = minSimilarity;
+        this.priceTolerance = priceTolerance;
+        this.rsiTolerance = rsiTolerance;
+        this.ttl = ttl;
+        this.index = new LshIndex<>(this.dimension, tables, bitsPerTable, maxEntries, INDEX_SEED);
+        this.hits = Counter.builder("advice.semantic-cache.requests")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("advice.semantic-cache.requests")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.lookup = Timer.builder("advice.semantic-cache.lookup")
+                .description("语义缓存单次查询耗时")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("advice.semantic-cache.size", index, LshIndex::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 查找可复用的建议，没有时返回 null。
+     */
+    public String find(CombinedContext ctx) {
+        if (!enabled || ctx == null) {
+            return null;
+        }
+        long startedAt = System.nanoTime();
+        SparseVector vector = embed(localExtractor.stripProducts(ctx.getUserText()));
+        if (vector == null) {
+            return null;
+        }
+        MarketState state = MarketState.of(ctx.getMarkets());
+        LshIndex.Match<Entry> match = index.nearest(vector, state.partition(), startedAt, minSimilarity,
+                entry -> entry.state().closeTo(state, priceTolerance, rsiTolerance));
+        lookup.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        if (match == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return match.value().advice();
+    }
+
+    public void put(CombinedContext ctx, String advice) {
+        if (!enabled || ctx == null || advice == null || advice.isEmpty()) {
+            return;
+        }
+        SparseVector vector = embed(localExtractor.stripProducts(ctx.getUserText()));
+        if (vector == null) {
+            return;
+        }
+        MarketState state = MarketState.of(ctx.getMarkets());
+        index.add(vector, state.partition(), System.nanoTime() + ttl.toNanos(), new Entry(state, advice));
+    }
+
+    /**
+     * 字符 1~3 元组的特征哈希：哈希值的最低位决定符号，其余位取模得到维度下标；单字权重减半。
+     * 文本为空时返回 null。
+     */
+    SparseVector embed(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        float[] dense = new float[dimension];
+        int mask = dimension - 1;
+        for (int start = 0; start < text.length(); start++) {
+            int hash = 0;
+            for (int n = 1; n <= 3 && start + n <= text.length(); n++) {
+                hash = hash * 31 + text.charAt(start + n - 1);
+                int mixed = mix(hash ^ (n << 24));
+                float weight = n == 1 ? UNIGRAM_WEIGHT : 1f;
+                dense[(mixed >>> 1) & mask] += (mixed & 1) == 0 ? weight : -weight;
+            }
+        }
+        int nonZero = 0;
+        double norm = 0;
+        for (float value : dense) {
+            if (value != 0) {
+                nonZero++;
+                norm += value * value;
+            }
+        }
+        if (nonZero == 0) {
+            return null;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        int[] indices = new int[nonZero];
+        float[] values = new float[nonZero];
+        for (int i = 0, j = 0; i < dimension; i++) {
+            if (dense[i] != 0) {
+                indices[j] = i;
+                values[j++] = dense[i] * scale;
+            }
+        }
+        return new SparseVector(indices, values);
+    }
+
+    /**
+     * murmur3 的 32 位收尾混合。
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private record Entry(MarketState state, String advice) {
+    }
+
+    /**
+     * 按标的排序后的价格与 RSI。
+     */
+    private record MarketState(String[] symbols, double[] prices, double[] rsis) {
+
+        static MarketState of(List<MarketSnapshot> markets) {
+            List<MarketSnapshot> sorted = new ArrayList<>();
+            if (markets != null) {
+                for (MarketSnapshot market : markets) {
+                    if (market != null && market.getSymbol() != null) {
+                        sorted.add(market);
+                    }
+                }
+            }
+            sorted.sort(Comparator.comparing(MarketSnapshot::getSymbol));
+            String[] symbols = new String[sorted.size()];
+            double[] prices = new double[sorted.size()];
+            double[] rsis = new double[sorted.size()];
+            for (int i = 0; i < sorted.size(); i++) {
+                symbols[i] = sorted.get(i).getSymbol();
+                prices[i] = sorted.get(i).getLastPrice();
+                rsis[i] = sorted.get(i).getRsi();
+            }
+            return new MarketState(symbols, prices, rsis);
+        }
+
+        /**
+         * 标的集合的哈希，作为索引的分区号。
+         */
+        int partition() {
+            return Arrays.hashCode(symbols);
+        }
+
+        boolean closeTo(MarketState other, double priceTolerance, double rsiTolerance) {
+            if (symbols.length != other.symbols.length) {
+                return false;
+            }
+            for (int i = 0; i < symbols.length; i++) {
+                if (!Objects.equals(symbols[i], other.symbols[i])) {
+                    return false;
+                }
+                double reference = Math.max(Math.abs(prices[i]), Double.MIN_VALUE);
+                if (Math.abs(prices[i] - other.prices[i]) / reference > priceTolerance
+                        || Math.abs(rsis[i] - other.rsis[i]) > rsiTolerance) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.datamining.ssedemo.service;
+
+import com.datamining.ssedemo.dto.ExtractResult;
+import com.datamining.ssedemo.dto.MarketSnapshot;
+import com.datamining.ssedemo.dto.NewsItem;
+import com.datamining.ssedemo.intent.LocalIntentExtractor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 在意图抽取进行的同时，按本地词典从原始输入中猜测标的，提前发起行情查询。
+ * <p>
+ * 真正的 {@link ExtractResult} 到达后：猜中的标的直接复用已发起的查询，猜错的丢弃（结果仍留在行情缓存中），
+ * 没猜到的标的再补发查询。
+ * <p>
+ * 新闻不做推测：新闻查询的关键词由 LLM 给出的自由文本类别与标的拼成，本地猜测的类别几乎不会与之相同，
+ * 推测的新闻查询基本都会浪费，因此新闻总是在抽取完成后按实际结果查询。
+ * 指标：{@code workflow.speculation.requests}（stage=market，result=hit|miss|wasted）
+ * 与 {@code workflow.speculation.saved}（复用时比正常发起提前的时间）。
+ */
+@Component
+public class SpeculativePrefetcher {
+
+    private final LocalIntentExtractor localExtractor;
+    private final boolean enabled;
+    private final Map<String, Counter> counters = new LinkedHashMap<>();
+    private final Timer marketSaved;
+
+    public SpeculativePrefetcher(LocalIntentExtractor localExtractor,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${workflow.speculation.enabled:true}") boolean enabled) {
+        this.localExtractor = localExtractor;
+        this.enabled = enabled;
+        for (String result : List.of("hit", "miss", "wasted")) {
+            counters.put("market|" + result, Counter.builder("workflow.speculation.requests")
+                    .tag("stage", "market")
+                    .tag("result", result)
+                    .register(meterRegistry));
+        }
+        this.marketSaved = savedTimer("market", meterRegistry);
+    }
+
+    /**
+     * 根据原始输入发起推测的行情查询并立即返回。未启用或猜不出任何标的时，返回的 {@link Speculation} 只是按需查询。
+     *
+     * @param newsFetcher   按抽取结果查询新闻，只在抽取完成后调用，返回的 future 不应以异常结束
+     * @param marketFetcher 按抽取结果查询行情，返回的 future 不应以异常结束
+     */
+    public Speculation speculate(String userText,
+                                 Function<ExtractResult, CompletableFuture<List<NewsItem>>> newsFetcher,
+                                 Function<ExtractResult, CompletableFuture<List<MarketSnapshot>>> marketFetcher) {
+        Speculation speculation = new Speculation(newsFetcher, marketFetcher);
+        if (!enabled) {
+            return speculation;
+        }
+        ExtractResult guess = localExtractor.extract(userText).result();
+        if (guess == null || isEmpty(guess.getProducts())) {
+            return speculation;
+        }
+        for (String product : guess.getProducts()) {
+            speculation.markets.put(product, new Prefetch<>(marketFetcher.apply(single(product))));
+        }
+        return speculation;
+    }
+
+    public final class Speculation {
+        private final Function<ExtractResult, CompletableFuture<List<NewsItem>>> newsFetcher;
+        private final Function<ExtractResult, CompletableFuture<List<MarketSnapshot>>> marketFetcher;
+        private final Map<String, Prefetch<List<MarketSnapshot>>> markets = new LinkedHashMap<>();
+
+        private Speculation(Function<ExtractResult, CompletableFuture<List<NewsItem>>> newsFetcher,
+                            Function<ExtractResult, CompletableFuture<List<MarketSnapshot>>> marketFetcher) {
+            this.newsFetcher = newsFetcher;
+            this.marketFetcher = marketFetcher;
+        }
+
+        public CompletableFuture<List<NewsItem>> news(ExtractResult extract) {
+            return newsFetcher.apply(extract);
+        }
+
+        /**
+         * 按 extract 中 products 的顺序合并各标的的快照；一个都没猜中时整体按原方式查询一次。
+         */
+        public CompletableFuture<List<MarketSnapshot>> market(ExtractResult extract) {
+            List<String> products = extract == null || isEmpty(extract.getProducts())
+                    ? Collections.emptyList()
+                    : extract.getProducts();
+            for (String guessed : markets.keySet()) {
+                if (!products.contains(guessed)) {
+                    record("market", "wasted");
+                }
+            }
+            if (markets.isEmpty() || products.stream().noneMatch(markets::containsKey)) {
+                products.forEach(product -> record("market", "miss"));
+                return marketFetcher.apply(extract);
+            }
+            List<CompletableFuture<List<MarketSnapshot>>> parts = new ArrayList<>(products.size());
+            for (String product : products) {
+                Prefetch<List<MarketSnapshot>> prefetch = markets.get(product);
+                if (prefetch != null) {
+                    record("market", "hit");
+                    marketSaved.record(prefetch.headStartNanos(), TimeUnit.NANOSECONDS);
+                    parts.add(prefetch.future);
+                } else {
+                    record("market", "miss");
+                    parts.add(marketFetcher.apply(single(product)));
+                }
+            }
+            CompletableFuture<List<MarketSnapshot>> combined = CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new))
+                    .thenApply(ignored -> {
+                        List<MarketSnapshot> snapshots = new ArrayList<>(parts.size());
+                        for (CompletableFuture<List<MarketSnapshot>> part : parts) {
+                            snapshots.addAll(part.join());
+                        }
+                        return snapshots;
+                    });
+            // 调用方放弃等待时一并取消各标的的查询
+            combined.whenComplete((value, ex) -> {
+                if (combined.isCancelled()) {
+                    parts.forEach(part -> part.cancel(true));
+                }
+            });
+            return combined;
+        }
+    }
+
+    /**
+     * 推测查询及其发起与完成时刻，用于计算复用时节省的时间。
+     */
+    private static final class Prefetch<T> {
+        private final CompletableFuture<T> future;
+        private final long startedAtNanos = System.nanoTime();
+        private volatile long completedAtNanos;
+
+        private Prefetch(CompletableFuture<T> future) {
+            this.future = future;
+            future.whenComplete((value, ex) -> completedAtNanos = System.nanoTime());
+        }
+
+        /**
+         * 已完成时节省的是整个查询耗时，否则是到目前为止已经领先的时间。
+         */
+        private long headStartNanos() {
+            long completedAt = completedAtNanos;
+            return (completedAt != 0 ? completedAt : System.nanoTime()) - startedAtNanos;
+        }
+    }
+
+    private void record(String stage, String result) {
+        counters.get(stage + '|' + result).increment();
+    }
+
+    private static Timer savedTimer(String stage, MeterRegistry meterRegistry) {
+        return Timer.builder("workflow.speculation.saved")
+                .description("复用推测查询时比抽取完成后再发起提前的时间")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    private static ExtractResult single(String product) {
+        return new ExtractResult(Collections.emptyList(), List.of(product), null);
+    }
+
+    private static boolean isEmpty(List<String> values) {
+        return values == null || values.isEmpty();
+    }
+}
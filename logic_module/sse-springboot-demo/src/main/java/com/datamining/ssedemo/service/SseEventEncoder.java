@@ -0,0 +1,167 @@
+package com.datamining.ssedemo.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把工作流事件编码为 {"type":..,"data":..[,"partial":true]} 的 SSE 负载。
+ * <p>
+ * 一次流式写出：type 与 data 直接写进同一个 JsonGenerator，不构造中间对象或 JsonNode 树；
+ * data 按运行时类型复用缓存的 ObjectWriter，每个事件只在最后生成一次 String。
+ * 字符缓冲区从有界的共享池中借出、用完归还，不绑定线程：工作流默认每次运行在新的虚拟线程上，
+ * 线程内缓存在那里得不到复用。池空时临时分配，池满时直接丢弃。
+ * <p>
+ * 事件携带 event 名（即 type）与单调递增的 id；流末尾的 [DONE] 只带 id，保持原有的结束标记。
+ */
+@Slf4j
+@Component
+public class SseEventEncoder {
+
+    public static final String DONE = "[DONE]";
+
+    private static final int POOL_SIZE = 32;
+
+    private static final String SERIALIZATION_FAILED = "{\"type\":\"error\",\"data\":{\"message\":\"serialization failed\"}}";
+
+    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+    private final ArrayBlockingQueue<ReusableWriter> buffers = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final Timer encodeTimer;
+
+    public SseEventEncoder(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
+        this.encodeTimer = Timer.builder("workflow.sse.encode")
+                .description("单个 SSE 事件的序列化耗时")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 序列化一个事件，data 为 null 时省略 data 字段，partial 为 true 时追加 "partial": true。
+     */
+    public Frame encode(String type, Object data, boolean partial) {
+        long start = System.nanoTime();
+        ReusableWriter out = borrow();
+        try {
+            try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+                generator.writeStartObject();
+                generator.writeStringField("type", type);
+                if (data != null) {
+                    generator.writeFieldName("data");
+                    writerFor(data.getClass()).writeValue(generator, data);
+                }
+                if (partial) {
+                    generator.writeBooleanField("partial", true);
+                }
+                generator.writeEndObject();
+            } catch (IOException | RuntimeException ex) {
+                log.error("序列化 {} 事件失败", type, ex);
+                return new Frame("error", SERIALIZATION_FAILED);
+            }
+            return new Frame(type, out.toString());
+        } finally {
+            release(out);
+            encodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public Frame done() {
+        return new Frame(null, DONE);
+    }
+
+    /**
+     * 按推送顺序给事件编号；id 从 1 开始。
+     */
+    public ServerSentEvent<String> toEvent(long id, Frame frame) {
+        ServerSentEvent.Builder<String> builder = ServerSentEvent.builder(frame.data()).id(Long.toString(id));
+        if (frame.event() != null) {
+            builder.event(frame.event());
+        }
+        return builder.build();
+    }
+
+    private ReusableWriter borrow() {
+        ReusableWriter out = buffers.poll();
+        return out != null ? out : new ReusableWriter();
+    }
+
+    private void release(ReusableWriter out) {
+        if (out.reset()) {
+            buffers.offer(out);
+        }
+    }
+
+    private ObjectWriter writerFor(Class<?> type) {
+        return writers.computeIfAbsent(type, objectMapper::writerFor);
+    }
+
+    /**
+     * 已序列化的事件：event 为 SSE 的 event 名，data 为 JSON 负载。
+     */
+    public record Frame(String event, String data) {
+    }
+
+    /**
+     * 可重置的字符输出，避免每个事件重新分配缓冲区；超大的缓冲区不放回池中，不长期占用内存。
+     */
+    private static final class ReusableWriter extends Writer {
+        private static final int INITIAL_CAPACITY = 1024;
+        private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+
+        private final StringBuilder buffer = new StringBuilder(INITIAL_CAPACITY);
+
+        /**
+         * @return 缓冲区是否值得放回池中
+         */
+        boolean reset() {
+            if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+                return false;
+            }
+            buffer.setLength(0);
+            return true;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            buffer.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String str, int offset, int length) {
+            buffer.append(str, offset, offset + length);
+        }
+
+        @Override
+        public void write(int c) {
+            buffer.append((char) c);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return buffer.toString();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.datamining.ssedemo.service;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * 用户输入的规范化：NFKC（全角转半角、兼容字符合并）、转小写、去掉标点，
+ * 连续空白折叠为一个空格，且只保留两个非中日韩字符之间的空格。
+ * 例如 "BTC 现在能买吗？"、"btc现在能买吗?" 都规范化为 "btc现在能买吗"。
+ * <p>
+ * 属于数字的标点保留：两个数字之间的小数点、数字前的负号与数字后的百分号，
+ * 因此 "6.5 万" 与 "65 万"、"-5%" 与 "5%" 不会得到相同的结果。
+ */
+public final class TextNormalizer {
+
+    private TextNormalizer() {
+    }
+
+    public static String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder builder = new StringBuilder(folded.length());
+        boolean pendingSpace = false;
+        int previous = -1;
+        for (int i = 0; i < folded.length(); ) {
+            int cp = folded.codePointAt(i);
+            i += Character.charCount(cp);
+            if (Character.isWhitespace(cp) || Character.isSpaceChar(cp)) {
+                pendingSpace = previous >= 0;
+                continue;
+            }
+            if (isPunctuation(cp) && !isNumeric(cp, previous, i < folded.length() ? folded.codePointAt(i) : -1)) {
+                continue;
+            }
+            if (pendingSpace && !isCjk(previous) && !isCjk(cp)) {
+                builder.append(' ');
+            }
+            pendingSpace = false;
+            builder.appendCodePoint(cp);
+            previous = cp;
+        }
+        return builder.toString();
+    }
+
+    private static boolean isPunctuation(int cp) {
+        switch (Character.getType(cp)) {
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 标点是否属于相邻的数字：小数点、负号或百分号。
+     */
+    private static boolean isNumeric(int cp, int previous, int next) {
+        boolean digitBefore = previous >= 0 && Character.isDigit(previous);
+        boolean digitAfter = next >= 0 && Character.isDigit(next);
+        return switch (cp) {
+            case '.' -> digitBefore && digitAfter;
+            case '-' -> digitAfter;
+            case '%' -> digitBefore;
+            default -> false;
+        };
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
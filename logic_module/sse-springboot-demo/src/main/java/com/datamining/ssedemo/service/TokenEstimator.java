@@ -0,0 +1,29 @@
+package com.datamining.ssedemo.service;
+
+/**
+ * 本地估算文本的 token 数，不依赖具体模型的分词器：
+ * 中日韩字符按 1 个 token，其余非空白字符每 4 个算 1 个 token（向上取整）。
+ */
+public final class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(CharSequence text) {
+        return text == null ? 0 : estimate(text, 0, text.length());
+    }
+
+    public static int estimate(CharSequence text, int start, int end) {
+        int cjk = 0;
+        int other = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '\u2E80' && c <= '\u9FFF' || c >= '\uAC00' && c <= '\uD7AF' || c >= '\uFF00' && c <= '\uFFEF') {
+                cjk++;
+            } else if (!Character.isWhitespace(c)) {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+}
@@ -0,0 +1,139 @@
+package com.datamining.ssedemo.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 决定阻塞式工作流在哪个线程上运行。
+ * <ul>
+ *     <li>virtual：每个工作流一个虚拟线程（需要 Java 21 运行时，否则退回 bounded）</li>
+ *     <li>bounded：Reactor 有界弹性线程池</li>
+ *     <li>caller：沿用订阅线程，即 Servlet 容器线程</li>
+ * </ul>
+ * 工作流内并发的外部查询使用 {@link #fetchExecutor()}：virtual 模式下同样每个任务一个虚拟线程，
+ * 其他模式下为有界线程池，队列满时拒绝新任务。
+ */
+@Slf4j
+@Component
+public class WorkflowExecutor {
+
+    private final String mode;
+    private final Scheduler scheduler;
+    private final ExecutorService fetchExecutor;
+    private final AtomicInteger activeWorkflows = new AtomicInteger();
+    private final Timer queueWait;
+
+    public WorkflowExecutor(MeterRegistry meterRegistry,
+                            @Value("${workflow.executor:virtual}") String executorMode,
+                            @Value("${workflow.bounded-executor.threads:64}") int boundedThreads,
+                            @Value("${workflow.bounded-executor.queue-size:10000}") int boundedQueueSize,
+                            @Value("${workflow.fetch-executor.threads:64}") int fetchThreads,
+                            @Value("${workflow.fetch-executor.queue-size:1000}") int fetchQueueSize) {
+        String requested = executorMode.trim().toLowerCase();
+        Scheduler selected = null;
+        ExecutorService fetch = null;
+        String effective = requested;
+        if ("virtual".equals(requested)) {
+            ExecutorService virtualExecutor = newVirtualThreadExecutor();
+            if (virtualExecutor != null) {
+                selected = Schedulers.fromExecutorService(virtualExecutor, "workflow-virtual");
+                fetch = newVirtualThreadExecutor();
+            } else {
+                log.warn("当前运行时不支持虚拟线程，workflow.executor 退回 bounded");
+                effective = "bounded";
+            }
+        } else if (!"bounded".equals(requested) && !"caller".equals(requested)) {
+            log.warn("未知的 workflow.executor={}，使用 bounded", executorMode);
+            effective = "bounded";
+        }
+        if ("bounded".equals(effective)) {
+            selected = Schedulers.newBoundedElastic(boundedThreads, boundedQueueSize, "workflow-bounded");
+        }
+        if (fetch == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("workflow-fetch-");
+            threadFactory.setDaemon(true);
+            int threads = Math.max(1, fetchThreads);
+            ThreadPoolExecutor bounded = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, fetchQueueSize)), threadFactory);
+            bounded.allowCoreThreadTimeOut(true);
+            fetch = bounded;
+        }
+        this.mode = effective;
+        this.scheduler = selected;
+        this.fetchExecutor = fetch;
+        log.info("工作流执行模式: {}", effective);
+
+        Gauge.builder("workflow.active", activeWorkflows, AtomicInteger::get)
+                .description("正在执行的工作流数量")
+                .tag("mode", effective)
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("workflow.queue.wait")
+                .description("工作流从提交到开始执行的排队时间")
+                .tag("mode", effective)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 将工作流挂到所选线程上执行，并统计排队时间与在途数量。
+     */
+    public <T> Flux<T> execute(Flux<T> workflow) {
+        return Flux.defer(() -> {
+            long submittedAt = System.nanoTime();
+            Flux<T> tracked = Flux.defer(() -> {
+                queueWait.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                activeWorkflows.incrementAndGet();
+                return workflow.doFinally(signal -> activeWorkflows.decrementAndGet());
+            });
+            return scheduler == null ? tracked : tracked.subscribeOn(scheduler);
+        });
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * 工作流内并发外部查询使用的线程池，提交被拒绝时抛出 {@link java.util.concurrent.RejectedExecutionException}。
+     */
+    public ExecutorService fetchExecutor() {
+        return fetchExecutor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.dispose();
+        }
+        fetchExecutor.shutdownNow();
+    }
+
+    /**
+     * 项目默认按 Java 17 编译，这里通过反射获取 Java 21 的虚拟线程执行器。
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+}
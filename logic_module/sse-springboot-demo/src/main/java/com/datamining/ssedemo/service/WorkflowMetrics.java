@@ -0,0 +1,62 @@
+package com.datamining.ssedemo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 工作流各阶段的延迟指标，以及并发请求合并的情况。
+ */
+@Component
+public class WorkflowMetrics {
+
+    private final Timer adviceFirstToken;
+    private final Timer adviceStreamed;
+    private final Timer adviceBlocking;
+    private final Counter coalesceLeaders;
+    private final Counter coalesceFollowers;
+
+    public WorkflowMetrics(MeterRegistry meterRegistry) {
+        this.adviceFirstToken = Timer.builder("workflow.advice.first-token")
+                .description("从开始生成建议到收到第一个 token 的时间")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.adviceStreamed = Timer.builder("workflow.advice.duration")
+                .description("生成完整建议的耗时")
+                .tag("mode", "stream")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.adviceBlocking = Timer.builder("workflow.advice.duration")
+                .description("生成完整建议的耗时")
+                .tag("mode", "blocking")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.coalesceLeaders = Counter.builder("workflow.coalesce.requests")
+                .description("按规范化文本合并执行链路的请求数")
+                .tag("role", "leader")
+                .register(meterRegistry);
+        this.coalesceFollowers = Counter.builder("workflow.coalesce.requests")
+                .description("按规范化文本合并执行链路的请求数")
+                .tag("role", "follower")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param leader 是否新建了执行链路；false 表示挂到了已有链路上
+     */
+    public void recordCoalesced(boolean leader) {
+        (leader ? coalesceLeaders : coalesceFollowers).increment();
+    }
+
+    public void recordFirstToken(long startedAtNanos) {
+        adviceFirstToken.record(System.nanoTime() - startedAtNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordAdvice(long startedAtNanos, boolean streamed) {
+        Timer timer = streamed ? adviceStreamed : adviceBlocking;
+        timer.record(System.nanoTime() - startedAtNanos, TimeUnit.NANOSECONDS);
+    }
+}
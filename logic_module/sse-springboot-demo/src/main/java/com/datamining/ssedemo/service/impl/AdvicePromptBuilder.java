@@ -0,0 +1,470 @@
+package com.datamining.ssedemo.service.impl;
+
+import com.datamining.ssedemo.dto.CombinedContext;
+import com.datamining.ssedemo.dto.ExtractResult;
+import com.datamining.ssedemo.dto.KlineSeries;
+import com.datamining.ssedemo.dto.MarketSnapshot;
+import com.datamining.ssedemo.dto.MessageVO;
+import com.datamining.ssedemo.dto.NewsItem;
+import com.datamining.ssedemo.dto.OrderBook;
+import com.datamining.ssedemo.dto.OrderBookLevel;
+import com.datamining.ssedemo.dto.TechnicalIndicators;
+import com.datamining.ssedemo.service.TokenEstimator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 按 token 预算拼装生成建议的用户提示词。
+ * <p>
+ * 行情按标的压缩为几行关键信号（价格区间、K 线走势、盘口价差与买卖力量、技术指标），优先放入；
+ * 新闻按时效与相关度排序，摘要截断到 max-summary-chars，在剩余预算内依次放入，放不下时只保留标题。
+ * 会话记忆（滚动摘要与最近几轮）放在最前，单独受 max-history-tokens 限制：摘要优先，其余从最近一轮往前放，
+ * 放不下的更早轮次省略，因此后续轮次的提示词大小基本恒定。
+ * token 数由 {@link TokenEstimator} 在本地估算。
+ * 渲染使用从有界共享池借出的 StringBuilder（不绑定线程，虚拟线程上同样复用），不使用 String.format。
+ * 指标：{@code llm.advice.prompt.chars}、{@code llm.advice.prompt.tokens}、{@code llm.advice.prompt.dropped-news}。
+ */
+@Component
+public class AdvicePromptBuilder {
+
+    private static final int BUILDER_CAPACITY = 4096;
+    private static final int BUILDER_RETAIN_LIMIT = 64 * 1024;
+    private static final int BUILDER_POOL_SIZE = 16;
+    private static final long RECENCY_HALF_LIFE_MILLIS = 12 * 3600_000L;
+    private static final int KLINE_TREND_BARS = 3;
+    private static final int DEPTH_LEVELS = 5;
+    private static final int HISTORY_MESSAGE_CHARS = 300;
+
+    private static final ArrayBlockingQueue<StringBuilder> BUFFERS = new ArrayBlockingQueue<>(BUILDER_POOL_SIZE);
+
+    private final int maxTokens;
+    private final int maxSummaryChars;
+    private final int maxHistoryTokens;
+    private final DistributionSummary promptChars;
+    private final DistributionSummary promptTokens;
+    private final Counter droppedNews;
+
+    public AdvicePromptBuilder(MeterRegistry meterRegistry,
+                               @Value("${llm.advice.prompt.max-tokens:2000}") int maxTokens,
+                               @Value("${llm.advice.prompt.max-summary-chars:200}") int maxSummaryChars,
+                               @Value("${llm.advice.prompt.max-history-tokens:500}") int maxHistoryTokens) {
+        this.maxTokens = maxTokens;
+        this.maxSummaryChars = maxSummaryChars;
+        this.maxHistoryTokens = maxHistoryTokens;
+        this.promptChars = DistributionSummary.builder("llm.advice.prompt.chars")
+                .description("建议提示词的字符数")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.promptTokens = DistributionSummary.builder("llm.advice.prompt.tokens")
+                .description("建议提示词的估算 token 数")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.droppedNews = Counter.builder("llm.advice.prompt.dropped-news")
+                .description("因超出 token 预算而未放入提示词的新闻条数")
+                .register(meterRegistry);
+    }
+
+    public String build(CombinedContext ctx) {
+        StringBuilder pooled = BUFFERS.poll();
+        StringBuilder sb = pooled != null ? pooled : new StringBuilder(BUILDER_CAPACITY);
+        try {
+            ExtractResult extract = ctx.getExtract();
+            List<String> categories = extract != null ? extract.getNewsCategories() : null;
+            List<String> products = extract != null ? extract.getProducts() : null;
+
+            renderHistory(sb, ctx.getHistory());
+            sb.append("用户原始问题: ").append(ctx.getUserText() == null ? "" : ctx.getUserText()).append("\n\n");
+            sb.append("已解析意图:\n");
+            sb.append("- 资讯类别: ");
+            appendJoined(sb, categories, "未知");
+            sb.append("\n- 关注标的: ");
+            appendJoined(sb, products, "未识别");
+            sb.append("\n\n行情数据:\n");
+            renderMarkets(sb, ctx.getMarkets());
+
+            // 结尾的固定要求也计入预算，剩余的才留给新闻
+            int tailStart = sb.length();
+            appendInstructions(sb);
+            int tailTokens = TokenEstimator.estimate(sb, tailStart, sb.length());
+            sb.setLength(tailStart);
+
+            sb.append("\n外部新闻:\n");
+            int budget = maxTokens - TokenEstimator.estimate(sb, 0, sb.length()) - tailTokens;
+            renderNews(sb, ctx.getNews(), categories, products, budget);
+            appendInstructions(sb);
+
+            promptChars.record(sb.length());
+            promptTokens.record(TokenEstimator.estimate(sb, 0, sb.length()));
+            return sb.toString();
+        } finally {
+            // 超大的缓冲区不放回池中；池满时直接丢弃
+            if (sb.capacity() <= BUILDER_RETAIN_LIMIT) {
+                sb.setLength(0);
+                BUFFERS.offer(sb);
+            }
+        }
+    }
+
+    private void renderHistory(StringBuilder sb, List<MessageVO> history) {
+        if (history == null || history.isEmpty()) {
+            return;
+        }
+        int start = sb.length();
+        sb.append("此前的对话:\n");
+        int used = TokenEstimator.estimate(sb, start, sb.length());
+        int headerEnd = sb.length();
+        // 先放摘要，再从最近一轮往前挑选，最后按时间顺序输出
+        List<MessageVO> recent = new ArrayList<>();
+        for (MessageVO message : history) {
+            if ("system".equals(message.getRole())) {
+                int before = sb.length();
+                appendHistoryLine(sb, "摘要", message.getContent());
+                int tokens = TokenEstimator.estimate(sb, before, sb.length());
+                if (used + tokens > maxHistoryTokens) {
+                    sb.setLength(before);
+                } else {
+                    used += tokens;
+                }
+            } else {
+                recent.add(message);
+            }
+        }
+        int first = recent.size();
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            int before = sb.length();
+            appendHistoryLine(sb, roleName(recent.get(i)), recent.get(i).getContent());
+            int tokens = TokenEstimator.estimate(sb, before, sb.length());
+            sb.setLength(before);
+            if (used + tokens > maxHistoryTokens) {
+                break;
+            }
+            used += tokens;
+            first = i;
+        }
+        for (int i = first; i < recent.size(); i++) {
+            appendHistoryLine(sb, roleName(recent.get(i)), recent.get(i).getContent());
+        }
+        if (sb.length() == headerEnd) {
+            sb.setLength(start);
+            return;
+        }
+        sb.append('\n');
+    }
+
+    private static void appendHistoryLine(StringBuilder sb, String role, String content) {
+        String text = content == null ? "" : content.strip();
+        sb.append("- ").append(role).append(": ");
+        if (text.length() > HISTORY_MESSAGE_CHARS) {
+            sb.append(text, 0, HISTORY_MESSAGE_CHARS).append("…");
+        } else {
+            sb.append(text);
+        }
+        sb.append('\n');
+    }
+
+    private static String roleName(MessageVO message) {
+        return "assistant".equals(message.getRole()) ? "助手" : "用户";
+    }
+
+    private static void appendInstructions(StringBuilder sb) {
+        sb.append("\n请结合以上信息，输出自然语言的结构化投资建议，至少包含：\n")
+                .append("1. 市场判断\n")
+                .append("2. 建议操作或关注点\n")
+                .append("3. 风险提示\n");
+    }
+
+    private void renderNews(StringBuilder sb,
+                            List<NewsItem> items,
+                            List<String> categories,
+                            List<String> products,
+                            int budget) {
+        if (items == null || items.isEmpty()) {
+            sb.append("- 暂无相关新闻\n");
+            return;
+        }
+        List<String> terms = relevanceTerms(categories, products);
+        long now = System.currentTimeMillis();
+        List<RankedNews> ranked = new ArrayList<>(items.size());
+        for (NewsItem item : items) {
+            if (item != null) {
+                ranked.add(new RankedNews(item, score(item, terms, now)));
+            }
+        }
+        ranked.sort(Comparator.comparingDouble(RankedNews::score).reversed());
+
+        int used = 0;
+        int rendered = 0;
+        for (RankedNews news : ranked) {
+            int start = sb.length();
+            appendNews(sb, news.item(), true);
+            int tokens = TokenEstimator.estimate(sb, start, sb.length());
+            if (used + tokens > budget) {
+                sb.setLength(start);
+                appendNews(sb, news.item(), false);
+                tokens = TokenEstimator.estimate(sb, start, sb.length());
+                if (used + tokens > budget) {
+                    sb.setLength(start);
+                    droppedNews.increment(ranked.size() - rendered);
+                    break;
+                }
+            }
+            used += tokens;
+            rendered++;
+        }
+        if (rendered < ranked.size()) {
+            sb.append("- 另有 ").append(ranked.size() - rendered).append(" 条新闻因篇幅省略\n");
+        }
+    }
+
+    private void appendNews(StringBuilder sb, NewsItem item, boolean withSummary) {
+        sb.append("- ").append(orDefault(item.getTitle(), "未知标题"))
+                .append(" (").append(orDefault(item.getSource(), "未知来源"))
+                .append(", ").append(orDefault(item.getPublishedAt(), "未知时间")).append(")\n");
+        if (withSummary && item.getSummary() != null && !item.getSummary().isBlank()) {
+            String summary = item.getSummary().strip();
+            sb.append("  摘要: ");
+            if (summary.length() > maxSummaryChars) {
+                sb.append(summary, 0, maxSummaryChars).append("…");
+            } else {
+                sb.append(summary);
+            }
+            sb.append('\n');
+        }
+    }
+
+    /**
+     * 时效分按 12 小时半衰期衰减，相关度分为标题与摘要中命中的关键词个数（标题权重加倍）。
+     */
+    private static double score(NewsItem item, List<String> terms, long now) {
+        double recency = 0;
+        long published = publishedAt(item.getPublishedAt());
+        if (published != UpstreamDecoders.INVALID_TIME) {
+            long age = Math.max(0, now - published);
+            recency = Math.pow(0.5, (double) age / RECENCY_HALF_LIFE_MILLIS);
+        }
+        String title = item.getTitle() == null ? "" : item.getTitle().toLowerCase(Locale.ROOT);
+        String summary = item.getSummary() == null ? "" : item.getSummary().toLowerCase(Locale.ROOT);
+        int relevance = 0;
+        for (String term : terms) {
+            if (title.contains(term)) {
+                relevance += 2;
+            }
+            if (summary.contains(term)) {
+                relevance++;
+            }
+        }
+        return relevance + recency;
+    }
+
+    private static long publishedAt(String text) {
+        if (text == null || text.isEmpty()) {
+            return UpstreamDecoders.INVALID_TIME;
+        }
+        char[] chars = text.toCharArray();
+        // 只取到秒，忽略小数秒与时区后缀
+        int length = chars.length > 19 && chars[4] == '-' ? 19 : chars.length;
+        return UpstreamDecoders.parseTimestamp(chars, 0, length);
+    }
+
+    /**
+     * 关键词：类别本身，以及交易对的基础币种（BTC-USDT 取 btc）。
+     */
+    private static List<String> relevanceTerms(List<String> categories, List<String> products) {
+        List<String> terms = new ArrayList<>();
+        if (categories != null) {
+            for (String category : categories) {
+                if (category != null && !category.isBlank()) {
+                    terms.add(category.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        if (products != null) {
+            for (String product : products) {
+                if (product == null || product.isBlank()) {
+                    continue;
+                }
+                String lower = product.toLowerCase(Locale.ROOT);
+                int dash = lower.indexOf('-');
+                terms.add(dash > 0 ? lower.substring(0, dash) : lower);
+            }
+        }
+        return terms;
+    }
+
+    private static void renderMarkets(StringBuilder sb, List<MarketSnapshot> snapshots) {
+        int start = sb.length();
+        if (snapshots != null) {
+            for (MarketSnapshot snapshot : snapshots) {
+                if (snapshot != null) {
+                    renderMarket(sb, snapshot);
+                }
+            }
+        }
+        if (sb.length() == start) {
+            sb.append("- 未获取到行情数据\n");
+        }
+    }
+
+    private static void renderMarket(StringBuilder sb, MarketSnapshot snapshot) {
+        double price = snapshot.getLastPrice();
+        sb.append("- ").append(snapshot.getSymbol()).append(" 最新价 ");
+        appendFixed(sb, price, 2);
+        sb.append(" 24h ");
+        appendSigned(sb, snapshot.getChangePercent(), 2);
+        sb.append("% 区间 ");
+        appendFixed(sb, snapshot.getLow24h(), 2);
+        sb.append('~');
+        appendFixed(sb, snapshot.getHigh24h(), 2);
+        sb.append(" 量 ");
+        appendCompact(sb, snapshot.getVolume24h());
+        sb.append(" RSI ");
+        appendFixed(sb, snapshot.getRsi(), 1);
+        sb.append('\n');
+
+        KlineSeries klines = snapshot.getKlines();
+        if (klines != null && klines.size() >= 2) {
+            int size = klines.size();
+            double first = klines.open(0);
+            sb.append("  K线: ").append(size).append("根 累计 ");
+            appendSigned(sb, first == 0 ? 0 : (klines.close(size - 1) - first) / first * 100, 2);
+            sb.append("% 近").append(Math.min(KLINE_TREND_BARS, size)).append("根 ");
+            for (int i = Math.max(0, size - KLINE_TREND_BARS); i < size; i++) {
+                sb.append(klines.close(i) >= klines.open(i) ? '涨' : '跌');
+            }
+            sb.append('\n');
+        }
+
+        OrderBook orderBook = snapshot.getOrderBook();
+        if (orderBook != null && !isEmpty(orderBook.getBids()) && !isEmpty(orderBook.getAsks())) {
+            double bestBid = orderBook.getBids().get(0).getPrice();
+            double bestAsk = orderBook.getAsks().get(0).getPrice();
+            double mid = (bestBid + bestAsk) / 2;
+            sb.append("  盘口: 买一 ");
+            appendFixed(sb, bestBid, 2);
+            sb.append(" 卖一 ");
+            appendFixed(sb, bestAsk, 2);
+            sb.append(" 价差 ");
+            appendFixed(sb, mid == 0 ? 0 : (bestAsk - bestBid) / mid * 100, 3);
+            double askVolume = depthVolume(orderBook.getAsks());
+            sb.append("% 买卖量比 ");
+            appendFixed(sb, askVolume == 0 ? 0 : depthVolume(orderBook.getBids()) / askVolume, 2);
+            sb.append('\n');
+        }
+
+        TechnicalIndicators indicators = snapshot.getIndicators();
+        if (indicators != null) {
+            int start = sb.length();
+            sb.append("  指标:");
+            if (indicators.getEma12() != null && indicators.getEma26() != null) {
+                sb.append(indicators.getEma12() >= indicators.getEma26() ? " EMA12在EMA26上方" : " EMA12在EMA26下方");
+            }
+            if (indicators.getMacdHistogram() != null) {
+                sb.append(" MACD柱 ");
+                appendSigned(sb, indicators.getMacdHistogram(), 4);
+            }
+            Double upper = indicators.getBollingerUpper();
+            Double lower = indicators.getBollingerLower();
+            if (upper != null && lower != null && upper > lower) {
+                sb.append(" 布林带位置 ");
+                appendFixed(sb, (price - lower) / (upper - lower) * 100, 0);
+                sb.append('%');
+            }
+            if (sb.length() == start + "  指标:".length()) {
+                sb.setLength(start);
+            } else {
+                sb.append('\n');
+            }
+        }
+    }
+
+    private static double depthVolume(List<OrderBookLevel> levels) {
+        double total = 0;
+        for (int i = 0; i < Math.min(DEPTH_LEVELS, levels.size()); i++) {
+            total += levels.get(i).getVolume();
+        }
+        return total;
+    }
+
+    private static void appendJoined(StringBuilder sb, List<String> values, String fallback) {
+        if (values == null || values.isEmpty()) {
+            sb.append(fallback);
+            return;
+        }
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(values.get(i));
+        }
+    }
+
+    private static void appendSigned(StringBuilder sb, double value, int decimals) {
+        if (value >= 0) {
+            sb.append('+');
+        }
+        appendFixed(sb, value, decimals);
+    }
+
+    /**
+     * 四舍五入到固定小数位后追加，不创建 Formatter。
+     */
+    static void appendFixed(StringBuilder sb, double value, int decimals) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            sb.append('-');
+            return;
+        }
+        long scale = 1;
+        for (int i = 0; i < decimals; i++) {
+            scale *= 10;
+        }
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            sb.append('-');
+        }
+        sb.append(scaled / scale);
+        if (decimals > 0) {
+            sb.append('.');
+            long fraction = scaled % scale;
+            for (long digit = scale / 10; digit > 1 && fraction < digit; digit /= 10) {
+                sb.append('0');
+            }
+            sb.append(fraction);
+        }
+    }
+
+    private static void appendCompact(StringBuilder sb, double value) {
+        double abs = Math.abs(value);
+        if (abs >= 1e9) {
+            appendFixed(sb, value / 1e9, 2);
+            sb.append('B');
+        } else if (abs >= 1e6) {
+            appendFixed(sb, value / 1e6, 2);
+            sb.append('M');
+        } else if (abs >= 1e3) {
+            appendFixed(sb, value / 1e3, 2);
+            sb.append('K');
+        } else {
+            appendFixed(sb, value, 2);
+        }
+    }
+
+    private static boolean isEmpty(List<?> values) {
+        return values == null || values.isEmpty();
+    }
+
+    private static String orDefault(String value, String fallback) {
+        return value == null || value.isBlank() ? fallback : value;
+    }
+
+    private record RankedNews(NewsItem item, double score) {
+    }
+}
@@ -0,0 +1,56 @@
+package com.datamining.ssedemo.service.impl;
+
+import com.datamining.ssedemo.dto.ExtractResult;
+import com.datamining.ssedemo.dto.MarketSnapshot;
+import com.datamining.ssedemo.dto.NewsItem;
+import com.datamining.ssedemo.service.Deadline;
+import com.datamining.ssedemo.service.ExternalServiceCoordinator;
+import com.datamining.ssedemo.service.ReactiveExternalServiceCoordinator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 启用响应式客户端时，为仍然依赖阻塞接口的调用方提供 {@link ExternalServiceCoordinator} 实现。
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnExpression("'${demo.mock:true}' == 'false' and '${external.services.client:blocking}' == 'reactive'")
+public class BlockingExternalServiceCoordinatorAdapter implements ExternalServiceCoordinator {
+
+    private final ReactiveExternalServiceCoordinator delegate;
+
+    @Override
+    public List<NewsItem> fetchNews(ExtractResult extract, Duration lookback) {
+        return delegate.fetchNews(extract, lookback)
+                .blockOptional()
+                .orElse(Collections.emptyList());
+    }
+
+    @Override
+    public List<MarketSnapshot> fetchMarket(ExtractResult extract, Duration lookback) {
+        return delegate.fetchMarket(extract, lookback)
+                .collectList()
+                .blockOptional()
+                .orElse(Collections.emptyList());
+    }
+
+    @Override
+    public List<NewsItem> fetchNews(ExtractResult extract, Duration lookback, Deadline deadline) {
+        return delegate.fetchNews(extract, lookback, deadline)
+                .blockOptional()
+                .orElse(Collections.emptyList());
+    }
+
+    @Override
+    public List<MarketSnapshot> fetchMarket(ExtractResult extract, Duration lookback, Deadline deadline) {
+        return delegate.fetchMarket(extract, lookback, deadline)
+                .collectList()
+                .blockOptional()
+                .orElse(Collections.emptyList());
+    }
+}
@@ -1,68 +1,93 @@
 package com.datamining.ssedemo.service.impl;
 
 import com.datamining.ssedemo.dto.ExtractResult;
-import com.datamining.ssedemo.dto.KlinePoint;
+import com.datamining.ssedemo.dto.KlineSeries;
 import com.datamining.ssedemo.dto.MarketSnapshot;
 import com.datamining.ssedemo.dto.NewsItem;
 import com.datamining.ssedemo.dto.OrderBook;
-import com.datamining.ssedemo.dto.OrderBookLevel;
+import com.datamining.ssedemo.market.KlineStore;
+import com.datamining.ssedemo.market.SymbolSeries;
+import com.datamining.ssedemo.resilience.CircuitBreaker;
+import com.datamining.ssedemo.resilience.CircuitBreakerRegistry;
+import com.datamining.ssedemo.resilience.LastKnownGood;
+import com.datamining.ssedemo.service.Deadline;
 import com.datamining.ssedemo.service.ExternalServiceCoordinator;
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.datamining.ssedemo.service.impl.UpstreamDecoders.DataReader;
+import com.datamining.ssedemo.service.impl.UpstreamPayloads.ApiResponse;
+import com.datamining.ssedemo.service.impl.UpstreamPayloads.KlineResult;
+import com.datamining.ssedemo.service.impl.UpstreamPayloads.TickerPayload;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.Getter;
-import lombok.Setter;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
 
-import java.time.Duration;
 import java.net.URI;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
- * 通过 HTTP 调用新闻与行情服务的协调器实现。
+ * 通过 HTTP 调用新闻与行情服务的协调器实现（阻塞式 RestTemplate）。
  */
 @Slf4j
 @Service
-@ConditionalOnProperty(name = "demo.mock", havingValue = "false")
+@ConditionalOnExpression("'${demo.mock:true}' == 'false' and '${external.services.client:blocking}' != 'reactive'")
 public class HttpExternalServiceCoordinator implements ExternalServiceCoordinator {
 
-    private static final Duration DEFAULT_LOOKBACK = Duration.ofHours(24);
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
-    private static final int RSI_PERIOD = 14;
+    private static final int FALLBACK_ENTRIES = 256;
 
     private final RestTemplate newsRestTemplate;
     private final RestTemplate marketRestTemplate;
-    private final ObjectMapper objectMapper;
+    private final UpstreamDecoders decoders;
     private final String newsBaseUrl;
     private final String marketBaseUrl;
-    private volatile boolean newsServiceEnabled = true;
-    private volatile boolean marketServiceEnabled = true;
+    /**
+     * 行情服务专用线程池，线程数即对行情服务的最大并发请求数。
+     */
+    private final ExecutorService marketExecutor;
+    private final Duration marketSymbolTimeout;
+    private final MarketDataCache marketDataCache;
+    private final KlineStore klineStore;
+    private final boolean newsEnabled;
+    private final boolean marketEnabled;
+    private final CircuitBreaker newsBreaker;
+    private final CircuitBreaker marketBreaker;
+    /**
+     * 各上游最近一次成功的数据，熔断或调用失败时作为降级结果。
+     */
+    private final LastKnownGood<String, List<NewsItem>> newsFallback = new LastKnownGood<>(FALLBACK_ENTRIES);
+    private final LastKnownGood<String, TickerPayload> tickerFallback = new LastKnownGood<>(FALLBACK_ENTRIES);
+    private final LastKnownGood<String, OrderBook> depthFallback = new LastKnownGood<>(FALLBACK_ENTRIES);
 
     public HttpExternalServiceCoordinator(RestTemplateBuilder builder,
                                           ObjectMapper objectMapper,
+                                          MarketDataCache marketDataCache,
+                                          KlineStore klineStore,
+                                          CircuitBreakerRegistry circuitBreakers,
                                           @Value("${external.services.news.base-url:http://127.0.0.1:9106/irls/news}") String newsBaseUrl,
                                           @Value("${external.services.news.timeout:PT5S}") Duration newsTimeout,
                                           @Value("${external.services.news.enabled:true}") boolean newsEnabled,
                                           @Value("${external.services.market.base-url:http://127.0.0.1:9105/irls/market}") String marketBaseUrl,
                                           @Value("${external.services.market.timeout:PT5S}") Duration marketTimeout,
-                                          @Value("${external.services.market.enabled:true}") boolean marketEnabled) {
-        this.objectMapper = objectMapper;
+                                          @Value("${external.services.market.enabled:true}") boolean marketEnabled,
+                                          @Value("${external.services.market.max-concurrency:8}") int marketMaxConcurrency,
+                                          @Value("${external.services.market.symbol-timeout:PT6S}") Duration marketSymbolTimeout) {
+        this.decoders = new UpstreamDecoders(objectMapper.getFactory());
         this.newsRestTemplate = builder
                 .rootUri(newsBaseUrl)
                 .setConnectTimeout(newsTimeout)
@@ -73,418 +98,246 @@ public class HttpExternalServiceCoordinator implements ExternalServiceCoordinato
                 .setConnectTimeout(marketTimeout)
                 .setReadTimeout(marketTimeout)
                 .build();
-        this.newsServiceEnabled = newsEnabled;
-        this.marketServiceEnabled = marketEnabled;
+        this.newsEnabled = newsEnabled;
+        this.marketEnabled = marketEnabled;
+        this.newsBreaker = circuitBreakers.breaker("news");
+        this.marketBreaker = circuitBreakers.breaker("market");
         this.newsBaseUrl = newsBaseUrl;
         this.marketBaseUrl = marketBaseUrl;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("market-fetch-");
+        threadFactory.setDaemon(true);
+        this.marketExecutor = Executors.newFixedThreadPool(Math.max(1, marketMaxConcurrency), threadFactory);
+        this.marketSymbolTimeout = marketSymbolTimeout;
+        this.marketDataCache = marketDataCache;
+        this.klineStore = klineStore;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        marketExecutor.shutdownNow();
     }
 
     @Override
     public List<NewsItem> fetchNews(ExtractResult extract, Duration lookback) {
-        if (!newsServiceEnabled) {
+        if (!newsEnabled) {
             return Collections.emptyList();
         }
-        Duration window = normalizeWindow(lookback);
+        String keyword = UpstreamPayloads.buildKeyword(extract);
+        if (!newsBreaker.tryAcquire()) {
+            return lastGoodNews(keyword);
+        }
+        Duration window = UpstreamPayloads.normalizeWindow(lookback);
         Instant now = Instant.now();
-        Instant from = now.minus(window);
-        String keyword = buildKeyword(extract);
-
-        URI uri = UriComponentsBuilder.fromHttpUrl(newsBaseUrl)
-                .path("/search")
-                .queryParam("keyword", keyword)
-                .queryParam("from", DATE_FORMATTER.format(from.atZone(ZoneOffset.UTC)))
-                .queryParam("to", DATE_FORMATTER.format(now.atZone(ZoneOffset.UTC)))
-                .queryParam("limit", 5)
-                .queryParam("sources", "")
-                .queryParam("region", "en")
-                .build()
-                .encode()
-                .toUri();
+        URI uri = UpstreamPayloads.newsSearchUri(newsBaseUrl, extract, now.minus(window), now);
 
         try {
-            ResponseEntity<String> response = newsRestTemplate.getForEntity(uri, String.class);
-            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
-                log.warn("新闻服务返回异常状态: {}", response.getStatusCode());
-                return Collections.emptyList();
+            ApiResponse<List<NewsItem>> body = get(newsRestTemplate, uri, UpstreamDecoders.NEWS);
+            if (body == null) {
+                newsBreaker.onFailure();
+                return lastGoodNews(keyword);
             }
-            ApiResponse<List<NewsPayload>> body = objectMapper.readValue(response.getBody(), new TypeReference<>() {});
+            newsBreaker.onSuccess();
             if (body.getCode() != 200 || CollectionUtils.isEmpty(body.getData())) {
                 log.info("新闻服务无数据: {}", body.getMessage());
                 return Collections.emptyList();
             }
-            return body.getData().stream()
-                    .map(item -> new NewsItem(
-                            item.getTitle(),
-                            item.getSource(),
-                            item.getUrl(),
-                            item.getSummary(),
-                            item.getPublishedAt()))
-                    .collect(Collectors.toList());
+            newsFallback.put(keyword, body.getData());
+            return body.getData();
         } catch (Exception ex) {
             log.error("调用新闻服务失败", ex);
-            newsServiceEnabled = false;
-            return Collections.emptyList();
+            newsBreaker.onFailure();
+            return lastGoodNews(keyword);
         }
     }
 
+    /**
+     * 不另起线程：截止时间已过时直接返回上次成功的结果，否则在调用线程上查询，单次调用受 news timeout 约束。
+     * 并发模式下调用方最多等待到截止时间，之后取消查询并中断所在线程。
+     */
+    @Override
+    public List<NewsItem> fetchNews(ExtractResult extract, Duration lookback, Deadline deadline) {
+        if (deadline.isExpired()) {
+            return lastGoodNews(UpstreamPayloads.buildKeyword(extract));
+        }
+        return fetchNews(extract, lookback);
+    }
+
     @Override
     public List<MarketSnapshot> fetchMarket(ExtractResult extract, Duration lookback) {
+        return fetchMarket(extract, lookback, marketSymbolTimeout);
+    }
+
+    /**
+     * 单个标的的等待时间取 symbol-timeout 与剩余时间中较小者。
+     */
+    @Override
+    public List<MarketSnapshot> fetchMarket(ExtractResult extract, Duration lookback, Deadline deadline) {
+        return fetchMarket(extract, lookback, deadline.cap(marketSymbolTimeout));
+    }
+
+    private List<MarketSnapshot> fetchMarket(ExtractResult extract, Duration lookback, Duration symbolTimeout) {
         if (extract == null || CollectionUtils.isEmpty(extract.getProducts())) {
             return Collections.emptyList();
         }
-        if (!marketServiceEnabled) {
+        if (!marketEnabled) {
             return Collections.emptyList();
         }
-        Duration window = normalizeWindow(lookback);
+        Duration window = UpstreamPayloads.normalizeWindow(lookback);
         Instant now = Instant.now();
         Instant from = now.minus(window);
-        List<MarketSnapshot> snapshots = new ArrayList<>();
-        for (String product : extract.getProducts()) {
-            if (!marketServiceEnabled) {
-                break;
-            }
-            Optional<TickerPayload> tickerOpt = fetchTicker(product);
-            if (tickerOpt.isEmpty()) {
-                continue;
+        List<String> products = extract.getProducts();
+        List<CompletableFuture<MarketSnapshot>> futures = new ArrayList<>(products.size());
+        for (String product : products) {
+            futures.add(fetchSnapshotAsync(product, window, from, now)
+                    .orTimeout(symbolTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .exceptionally(ex -> {
+                        if (ex instanceof TimeoutException) {
+                            log.warn("获取 {} 行情超过 {}，跳过该标的", product, symbolTimeout);
+                        } else {
+                            log.error("获取 {} 行情失败", product, ex);
+                        }
+                        return null;
+                    }));
+        }
+        // 按输入顺序收集，单个标的最多等待 symbol-timeout
+        List<MarketSnapshot> snapshots = new ArrayList<>(futures.size());
+        for (CompletableFuture<MarketSnapshot> future : futures) {
+            MarketSnapshot snapshot = future.join();
+            if (snapshot != null) {
+                snapshots.add(snapshot);
             }
-            KlineResult klineResult = fetchKlines(product, from, now);
-            TickerPayload ticker = tickerOpt.get();
-            OrderBook orderBook = fetchDepth(product)
-                    .map(depth -> new OrderBook(
-                            convertDepth(depth.getBids()),
-                            convertDepth(depth.getAsks())
-                    ))
-                    .orElse(null);
-            snapshots.add(new MarketSnapshot(
-                    ticker.getSymbol(),
-                    ticker.getLastPrice(),
-                    ticker.getHigh24h(),
-                    ticker.getLow24h(),
-                    ticker.getVolume24h(),
-                    ticker.getChangePercent(),
-                    klineResult.getRsi(),
-                    klineResult.getKlines(),
-                    orderBook
-            ));
         }
         return snapshots;
     }
 
+    /**
+     * 单个标的的 ticker、kline、depth 三个请求并行发起，全部返回后组装快照。
+     * 三个请求都经过 {@link MarketDataCache}，命中时不访问行情服务；某项获取失败或熔断时使用该项最近一次成功的数据，
+     * ticker 仍然缺失时返回 null。
+     */
+    private CompletableFuture<MarketSnapshot> fetchSnapshotAsync(String product, Duration window, Instant from, Instant to) {
+        CompletableFuture<TickerPayload> tickerFuture = marketDataCache.ticker(product,
+                () -> CompletableFuture.supplyAsync(() -> fetchTicker(product).orElse(null), marketExecutor));
+        CompletableFuture<KlineResult> klineFuture = marketDataCache.klines(product, window,
+                () -> CompletableFuture.supplyAsync(() -> fetchKlines(product, from, to), marketExecutor));
+        CompletableFuture<OrderBook> depthFuture = marketDataCache.depth(product,
+                () -> CompletableFuture.supplyAsync(() -> fetchDepth(product).orElse(null), marketExecutor));
+        return CompletableFuture.allOf(tickerFuture, klineFuture, depthFuture)
+                .thenApply(ignored -> {
+                    TickerPayload ticker = Optional.ofNullable(tickerFuture.join())
+                            .orElseGet(() -> tickerFallback.get(product));
+                    if (ticker == null) {
+                        return null;
+                    }
+                    KlineResult klineResult = Optional.ofNullable(klineFuture.join())
+                            .or(() -> Optional.ofNullable(bufferedKlines(product, from)))
+                            .orElseGet(UpstreamPayloads::emptyKlineResult);
+                    OrderBook orderBook = Optional.ofNullable(depthFuture.join())
+                            .orElseGet(() -> depthFallback.get(product));
+                    return UpstreamPayloads.toSnapshot(ticker, klineResult, orderBook);
+                });
+    }
+
     private Optional<TickerPayload> fetchTicker(String product) {
-        URI uri = UriComponentsBuilder.fromHttpUrl(marketBaseUrl)
-                .path("/get_ticker")
-                .queryParam("platform", "OKX")
-                .queryParam("symbol", product)
-                .build()
-                .encode()
-                .toUri();
+        if (!marketBreaker.tryAcquire()) {
+            return Optional.empty();
+        }
+        URI uri = UpstreamPayloads.tickerUri(marketBaseUrl, product);
         try {
-            ResponseEntity<String> response = marketRestTemplate.getForEntity(uri, String.class);
-            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
-                log.warn("行情 ticker 接口状态异常: {}", response.getStatusCode());
-                marketServiceEnabled = false;
+            ApiResponse<TickerPayload> body = get(marketRestTemplate, uri, UpstreamDecoders.TICKER);
+            if (body == null) {
+                marketBreaker.onFailure();
                 return Optional.empty();
             }
-            ApiResponse<TickerPayload> body = objectMapper.readValue(response.getBody(), new TypeReference<>() {});
+            marketBreaker.onSuccess();
             if (body.getCode() != 200 || body.getData() == null) {
                 log.warn("行情 ticker 接口返回失败: {} - {}", body.getCode(), body.getMessage());
-                marketServiceEnabled = false;
                 return Optional.empty();
             }
+            tickerFallback.put(product, body.getData());
             return Optional.of(body.getData());
         } catch (Exception ex) {
             log.error("获取 {} ticker 失败", product, ex);
-            marketServiceEnabled = false;
+            marketBreaker.onFailure();
             return Optional.empty();
         }
     }
 
+    /**
+     * 只向行情服务拉取缓冲区最后一根蜡烛之后的数据，再由 {@link KlineStore} 中的缓冲区提供完整窗口。
+     * 失败或熔断时返回 null，不写入缓存，由调用方改用缓冲区中已有的数据。
+     */
     private KlineResult fetchKlines(String product, Instant from, Instant to) {
-        URI uri = UriComponentsBuilder.fromHttpUrl(marketBaseUrl)
-                .path("/get_klines")
-                .queryParam("platform", "OKX")
-                .queryParam("symbol", product)
-                .queryParam("market_type", "SPOT")
-                .queryParam("interval", "1H")
-                .queryParam("start_time", from.getEpochSecond())
-                .queryParam("end_time", to.getEpochSecond())
-                .queryParam("limit", 120)
-                .build()
-                .encode()
-                .toUri();
+        if (!marketBreaker.tryAcquire()) {
+            return null;
+        }
+        SymbolSeries series = klineStore.find(product, UpstreamPayloads.KLINE_INTERVAL);
+        Instant fetchFrom = KlineStore.fetchFrom(series, from, UpstreamPayloads.KLINE_INTERVAL_DURATION);
+        int limit = KlineStore.expectedBars(fetchFrom, to, UpstreamPayloads.KLINE_INTERVAL_DURATION, UpstreamPayloads.KLINE_LIMIT);
+        URI uri = UpstreamPayloads.klinesUri(marketBaseUrl, product, fetchFrom, to, limit);
         try {
-            ResponseEntity<String> response = marketRestTemplate.getForEntity(uri, String.class);
-            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
-                log.warn("行情 kline 接口状态异常: {}", response.getStatusCode());
-                marketServiceEnabled = false;
-                return new KlineResult(50.0, Collections.emptyList());
-            }
-            ApiResponse<List<KlinePayload>> body = objectMapper.readValue(response.getBody(), new TypeReference<>() {});
-            if (body.getCode() != 200 || CollectionUtils.isEmpty(body.getData())) {
-                return new KlineResult(50.0, Collections.emptyList());
+            ApiResponse<KlineSeries> body = get(marketRestTemplate, uri, UpstreamDecoders.KLINES);
+            if (body == null) {
+                marketBreaker.onFailure();
+                return null;
             }
-            List<KlinePoint> klines = body.getData().stream()
-                    .map(k -> new KlinePoint(
-                            Optional.ofNullable(k.getStartTime()).orElse(0L),
-                            safeDouble(k.getOpenPrice()),
-                            safeDouble(k.getHighPrice()),
-                            safeDouble(k.getLowPrice()),
-                            safeDouble(k.getClosePrice()),
-                            safeDouble(k.getVolume())
-                    ))
-                    .collect(Collectors.toList());
-            List<Double> closes = klines.stream()
-                    .map(KlinePoint::getClose)
-                    .collect(Collectors.toList());
-            double rsi = calcRsi(closes, RSI_PERIOD);
-            return new KlineResult(rsi, klines);
+            marketBreaker.onSuccess();
+            return UpstreamPayloads.mergeResponse(klineStore, product, body, from);
         } catch (Exception ex) {
             log.error("获取 {} kline 失败", product, ex);
-            marketServiceEnabled = false;
-            return new KlineResult(50.0, Collections.emptyList());
+            marketBreaker.onFailure();
+            return null;
         }
     }
 
-    private Optional<DepthPayload> fetchDepth(String product) {
-        URI uri = UriComponentsBuilder.fromHttpUrl(marketBaseUrl)
-                .path("/get_depth")
-                .queryParam("platform", "OKX")
-                .queryParam("symbol", product)
-                .build()
-                .encode()
-                .toUri();
+    private Optional<OrderBook> fetchDepth(String product) {
+        if (!marketBreaker.tryAcquire()) {
+            return Optional.empty();
+        }
+        URI uri = UpstreamPayloads.depthUri(marketBaseUrl, product);
         try {
-            ResponseEntity<String> response = marketRestTemplate.getForEntity(uri, String.class);
-            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
-                log.warn("行情 depth 接口状态异常: {}", response.getStatusCode());
+            ApiResponse<OrderBook> body = get(marketRestTemplate, uri, UpstreamDecoders.DEPTH);
+            if (body == null) {
+                marketBreaker.onFailure();
                 return Optional.empty();
             }
-            ApiResponse<DepthPayload> body = objectMapper.readValue(response.getBody(), new TypeReference<>() {});
+            marketBreaker.onSuccess();
             if (body.getCode() != 200 || body.getData() == null) {
                 log.warn("行情 depth 接口返回失败: {} - {}", body.getCode(), body.getMessage());
                 return Optional.empty();
             }
+            depthFallback.put(product, body.getData());
             return Optional.of(body.getData());
         } catch (Exception ex) {
             log.error("获取 {} depth 失败", product, ex);
+            marketBreaker.onFailure();
             return Optional.empty();
         }
     }
 
-    private Duration normalizeWindow(Duration lookback) {
-        if (lookback == null || lookback.isNegative() || lookback.isZero()) {
-            return DEFAULT_LOOKBACK;
-        }
-        return lookback;
+    private List<NewsItem> lastGoodNews(String keyword) {
+        List<NewsItem> news = newsFallback.get(keyword);
+        return news == null ? Collections.emptyList() : news;
     }
 
-    private String buildKeyword(ExtractResult extract) {
-        if (extract == null) {
-            return "";
-        }
-        List<String> parts = new ArrayList<>();
-        if (!CollectionUtils.isEmpty(extract.getNewsCategories())) {
-            parts.addAll(extract.getNewsCategories());
-        }
-        if (!CollectionUtils.isEmpty(extract.getProducts())) {
-            parts.addAll(extract.getProducts());
-        }
-        if (parts.isEmpty()) {
-            return "";
-        }
-        return String.join(" OR ", parts);
+    private KlineResult bufferedKlines(String product, Instant windowStart) {
+        return UpstreamPayloads.bufferedKlines(klineStore, product, windowStart);
     }
 
-    private double calcRsi(List<Double> closes, int period) {
-        if (closes.size() <= period) {
-            return 50.0;
-        }
-        double gain = 0.0;
-        double loss = 0.0;
-        for (int i = 1; i <= period; i++) {
-            double change = closes.get(i) - closes.get(i - 1);
-            if (change > 0) {
-                gain += change;
-            } else {
-                loss -= change;
-            }
-        }
-        gain /= period;
-        loss /= period;
-        if (loss == 0) {
-            return 100.0;
-        }
-        double rs = gain / loss;
-        double rsi = 100 - (100 / (1 + rs));
-        double avgGain = gain;
-        double avgLoss = loss;
-        for (int i = period + 1; i < closes.size(); i++) {
-            double change = closes.get(i) - closes.get(i - 1);
-            if (change > 0) {
-                avgGain = (avgGain * (period - 1) + change) / period;
-                avgLoss = (avgLoss * (period - 1)) / period;
-            } else {
-                avgGain = (avgGain * (period - 1)) / period;
-                avgLoss = (avgLoss * (period - 1) - change) / period;
-            }
-            if (avgLoss == 0) {
-                rsi = 100.0;
-            } else {
-                rs = avgGain / avgLoss;
-                rsi = 100 - (100 / (1 + rs));
-            }
-        }
-        return Math.max(0, Math.min(100, rsi));
-    }
-
-    private List<OrderBookLevel> convertDepth(List<List<Double>> levels) {
-        if (CollectionUtils.isEmpty(levels)) {
-            return Collections.emptyList();
-        }
-        return levels.stream()
-                .filter(level -> level.size() >= 2)
-                .limit(5)
-                .map(level -> new OrderBookLevel(level.get(0), level.get(1)))
-                .collect(Collectors.toList());
-    }
-
-    private double safeDouble(Double value) {
-        return value == null ? 0.0 : value;
-    }
-
-    @Getter
-    @Setter
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class ApiResponse<T> {
-        private int code;
-        private T data;
-        private String message;
-    }
-
-    @Getter
-    @Setter
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class NewsPayload {
-        private String title;
-        private String source;
-        private String url;
-        private String summary;
-        private String published_at;
-
-        String getPublishedAt() {
-            return published_at;
-        }
-    }
-
-    @Getter
-    @Setter
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class TickerPayload {
-        private String symbol;
-        private double last_price;
-        private double high24h;
-        private double low24h;
-        private double volume24h;
-        private double change_percent;
-
-        double getLastPrice() {
-            return last_price;
-        }
-
-        double getChangePercent() {
-            return change_percent;
-        }
-    }
-
-    @Getter
-    @Setter
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class KlinePayload {
-        // Upstream may send number seconds/ms or a formatted string like "YYYY-MM-DD HH:MM:SS".
-        private Object start_time;
-        private Double open_price;
-        private Double high_price;
-        private Double low_price;
-        private Double close_price;
-        private Double volume;
-
-        Double getClosePrice() {
-            return close_price;
-        }
-
-        Long getStartTime() {
-            return toEpochMillis(start_time);
-        }
-
-        Double getOpenPrice() {
-            return open_price;
-        }
-
-        Double getHighPrice() {
-            return high_price;
-        }
-
-        Double getLowPrice() {
-            return low_price;
-        }
-
-        Double getVolume() {
-            return volume;
-        }
-
-        private Long toEpochMillis(Object v) {
-            try {
-                if (v == null) return null;
-                if (v instanceof Number num) {
-                    long iv = num.longValue();
-                    // If looks like seconds, convert to ms
-                    return iv > 10_000_000_000L ? iv : iv * 1000L;
-                }
-                if (v instanceof String s) {
-                    String str = s.trim();
-                    // numeric string
-                    if (str.matches("^-?\\d+$")) {
-                        long iv = Long.parseLong(str);
-                        return iv > 10_000_000_000L ? iv : iv * 1000L;
-                    }
-                    // try parse common pattern: 2025-11-01 01:00:00 (assume UTC)
-                    try {
-                        java.time.LocalDateTime ldt = java.time.LocalDateTime.parse(str, java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-                        return ldt.toInstant(java.time.ZoneOffset.UTC).toEpochMilli();
-                    } catch (Exception ignore) {
-                        // fallthrough
-                    }
-                }
-                return null;
-            } catch (Exception e) {
+    /**
+     * 把响应流直接交给解码器，不先读成 String；非 2xx 或响应体为空时返回 null。
+     */
+    private <T> ApiResponse<T> get(RestTemplate restTemplate, URI uri, DataReader<T> reader) {
+        return restTemplate.execute(uri, HttpMethod.GET, null, response -> {
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                log.warn("{} 返回异常状态: {}", uri.getPath(), response.getStatusCode());
                 return null;
             }
-        }
-    }
-
-    @Getter
-    @Setter
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class DepthPayload {
-        private List<List<Double>> bids;
-        private List<List<Double>> asks;
-    }
-
-    private static class KlineResult {
-        private final double rsi;
-        private final List<KlinePoint> klines;
-
-        KlineResult(double rsi, List<KlinePoint> klines) {
-            this.rsi = rsi;
-            this.klines = klines;
-        }
-
-        double getRsi() {
-            return rsi;
-        }
-
-        List<KlinePoint> getKlines() {
-            return klines;
-        }
+            ApiResponse<T> body = decoders.decode(response.getBody(), reader);
+            if (body == null) {
+                log.warn("{} 响应体为空", uri.getPath());
+            }
+            return body;
+        });
     }
 }
@@ -0,0 +1,58 @@
+package com.datamining.ssedemo.service.impl;
+
+import com.datamining.ssedemo.cache.SingleFlightCache;
+import com.datamining.ssedemo.dto.OrderBook;
+import com.datamining.ssedemo.service.impl.UpstreamPayloads.KlineResult;
+import com.datamining.ssedemo.service.impl.UpstreamPayloads.TickerPayload;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 进程内共享的行情缓存，ticker / kline / depth 各自独立的 TTL 与容量。
+ * 同一标的的并发请求合并为一次上游调用，供阻塞与响应式协调器共用。
+ */
+@Component
+public class MarketDataCache {
+
+    private final SingleFlightCache<String, TickerPayload> tickers;
+    private final SingleFlightCache<String, KlineResult> klines;
+    private final SingleFlightCache<String, OrderBook> depths;
+    private final Duration tickerTtl;
+    private final Duration depthTtl;
+    private final Duration klineTtl;
+
+    public MarketDataCache(MeterRegistry meterRegistry,
+                           @Value("${external.services.market.cache.max-entries:1024}") int maxEntries,
+                           @Value("${external.services.market.cache.ticker-ttl:PT2S}") Duration tickerTtl,
+                           @Value("${external.services.market.cache.depth-ttl:PT1S}") Duration depthTtl,
+                           @Value("${external.services.market.cache.kline-ttl:PT3S}") Duration klineTtl) {
+        this.tickers = new SingleFlightCache<>("market.cache", "ticker", maxEntries, meterRegistry);
+        this.klines = new SingleFlightCache<>("market.cache", "kline", maxEntries, meterRegistry);
+        this.depths = new SingleFlightCache<>("market.cache", "depth", maxEntries, meterRegistry);
+        this.tickerTtl = tickerTtl;
+        this.depthTtl = depthTtl;
+        this.klineTtl = klineTtl;
+    }
+
+    CompletableFuture<TickerPayload> ticker(String product, Supplier<CompletableFuture<TickerPayload>> loader) {
+        return tickers.get(product, tickerTtl, loader);
+    }
+
+    /**
+     * 最后一根蜡烛尚未收盘，其收盘价与基于它的 RSI、指标预览随成交变化，因此 TTL 与 ticker 同一量级；
+     * 过期后的请求只向上游拉取最后一根之后的增量，开销很小。
+     */
+    CompletableFuture<KlineResult> klines(String product, Duration window, Supplier<CompletableFuture<KlineResult>> loader) {
+        String key = product + '|' + window.toMinutes();
+        return klines.get(key, klineTtl, loader);
+    }
+
+    CompletableFuture<OrderBook> depth(String product, Supplier<CompletableFuture<OrderBook>> loader) {
+        return depths.get(product, depthTtl, loader);
+    }
+}
@@ -2,11 +2,7 @@ package com.datamining.ssedemo.service.impl;
 
 import com.datamining.ssedemo.dto.CombinedContext;
 import com.datamining.ssedemo.dto.ExtractResult;
-import com.datamining.ssedemo.dto.KlinePoint;
-import com.datamining.ssedemo.dto.MarketSnapshot;
-import com.datamining.ssedemo.dto.NewsItem;
-import com.datamining.ssedemo.dto.OrderBook;
-import com.datamining.ssedemo.dto.OrderBookLevel;
+import com.datamining.ssedemo.service.Deadline;
 import com.datamining.ssedemo.service.LLMService;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -16,13 +12,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
-import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -42,7 +35,7 @@ public class OpenAiLLMService implements LLMService {
 
     private static final String EXTRACT_USER_TEMPLATE = """
             请从以下用户输入中抽取财经资讯类别与涉及的金融产品，并说明推理：
-            输出格式固定为 JSON，包含字段：
+            输出格式固定为 JSON，按以下顺序包含字段：
             - newsCategories: 字符串数组（英文小写主题，例如 finance、policy）
             - products: 字符串数组（使用常见交易代码，例如 BTC-USDT、AAPL）
             - reasoning: 字符串，描述你的推理过程
@@ -54,29 +47,22 @@ public class OpenAiLLMService implements LLMService {
     private static final String ADVICE_SYSTEM_PROMPT = "You are a professional Chinese financial advisor. "
             + "Write concise, actionable advice with clear risk reminders.";
 
-    private static final String ADVICE_USER_TEMPLATE = """
-            用户原始问题: %s
+    private static final String SUMMARY_SYSTEM_PROMPT = "You maintain a running summary of a Chinese financial-advice chat. "
+            + "Keep the user's holdings, goals, risk preferences and the key conclusions already given; drop small talk.";
 
-            已解析意图:
-            - 资讯类别: %s
-            - 关注标的: %s
+    private static final String SUMMARY_USER_TEMPLATE = """
+            请把已有摘要与新的对话记录合并为一段不超过 %d 字的中文摘要，只输出摘要正文。
 
-            外部新闻:
+            已有摘要：
             %s
 
-            行情数据:
+            新的对话记录：
             %s
-
-            请结合以上信息，输出自然语言的结构化投资建议，至少包含：
-            1. 市场判断
-            2. 建议操作或关注点
-            3. 风险提示
             """;
 
-    private static final DateTimeFormatter KLINE_TIME_FORMATTER = DateTimeFormatter.ofPattern("MM-dd HH:mm").withZone(ZoneOffset.UTC);
-
     private final ChatClient chatClient;
     private final ObjectMapper objectMapper;
+    private final AdvicePromptBuilder advicePromptBuilder;
 
     @Override
     public ExtractResult extract(String userText) {
@@ -86,46 +72,129 @@ public class OpenAiLLMService implements LLMService {
                     .user(String.format(EXTRACT_USER_TEMPLATE, userText))
                     .call()
                     .content();
-            JsonNode root = objectMapper.readTree(raw);
-            List<String> categories = readStringArray(root.get("newsCategories"));
-            List<String> products = readStringArray(root.get("products"));
-            String reasoning = root.path("reasoning").asText("");
-            return new ExtractResult(categories, products, reasoning);
+            return parseExtract(raw);
         } catch (Exception ex) {
             log.warn("Failed to extract intent, fallback to empty result", ex);
-            return new ExtractResult(Collections.emptyList(), Collections.emptyList(), "fallback");
+            return fallbackExtract();
         }
     }
 
+    /**
+     * 以流式请求抽取并在剩余时间内收集完整输出；超时会取消底层请求并返回降级结果。
+     */
     @Override
-    public boolean supportsStreaming() {
-        return true;
+    public ExtractResult extract(String userText, Deadline deadline) {
+        if (deadline.isExpired()) {
+            return fallbackExtract();
+        }
+        try {
+            String raw = chatClient.prompt()
+                    .system(EXTRACT_SYSTEM_PROMPT)
+                    .user(String.format(EXTRACT_USER_TEMPLATE, userText))
+                    .stream()
+                    .content()
+                    .collect(Collectors.joining())
+                    .block(deadline.remaining());
+            return parseExtract(raw);
+        } catch (Exception ex) {
+            log.warn("Failed to extract intent within {}, fallback to empty result", deadline, ex);
+            return fallbackExtract();
+        }
     }
 
+    /**
+     * 边接收边增量解析：两个数组闭合后立即回调 onIntent，reasoning 随生成进度推送。
+     * 到达截止时间时取消请求，以已解析的部分作为结果；输出无法解析时返回降级结果。
+     */
     @Override
-    public void streamAdvice(CombinedContext ctx, Consumer<String> onChunk, Runnable onDone) {
+    public void extract(String userText,
+                        Deadline deadline,
+                        Consumer<ExtractResult> onIntent,
+                        Consumer<String> onReasoning,
+                        Consumer<ExtractResult> onDone) {
+        if (deadline.isExpired()) {
+            ExtractResult fallback = fallbackExtract();
+            safeAccept(onIntent, fallback);
+            safeAccept(onDone, fallback);
+            return;
+        }
+        StreamingExtractParser parser = new StreamingExtractParser();
+        AtomicBoolean intentSent = new AtomicBoolean(false);
         AtomicBoolean completed = new AtomicBoolean(false);
+        Runnable finish = () -> {
+            ExtractResult result = parser.hasContent() ? parser.result() : fallbackExtract();
+            if (intentSent.compareAndSet(false, true)) {
+                safeAccept(onIntent, result);
+            }
+            String rest = parser.drainReasoning();
+            if (!rest.isEmpty()) {
+                safeAccept(onReasoning, rest);
+            }
+            safeAccept(onDone, result);
+        };
         chatClient.prompt()
-                .system(ADVICE_SYSTEM_PROMPT)
-                .user(buildAdvicePrompt(ctx))
+                .system(EXTRACT_SYSTEM_PROMPT)
+                .user(String.format(EXTRACT_USER_TEMPLATE, userText))
                 .stream()
                 .content()
+                .take(deadline.remaining())
                 .subscribe(
-                        chunk -> safeAccept(onChunk, chunk),
+                        chunk -> {
+                            parser.feed(chunk);
+                            if (!intentSent.get() && parser.intentReady() && intentSent.compareAndSet(false, true)) {
+                                safeAccept(onIntent, parser.result());
+                            }
+                            if (intentSent.get()) {
+                                String delta = parser.drainReasoning();
+                                if (!delta.isEmpty()) {
+                                    safeAccept(onReasoning, delta);
+                                }
+                            }
+                        },
                         ex -> {
-                            log.error("LLM streaming failed", ex);
-                            runOnce(onDone, completed);
+                            log.warn("Streaming intent extraction failed, using parsed part", ex);
+                            runOnce(finish, completed);
                         },
-                        () -> runOnce(onDone, completed)
+                        () -> runOnce(finish, completed)
                 );
     }
 
+    @Override
+    public boolean supportsStreaming() {
+        return true;
+    }
+
+    @Override
+    public void streamAdvice(CombinedContext ctx, Consumer<String> onChunk, Runnable onDone) {
+        streamAdvice(adviceStream(ctx), onChunk, onDone);
+    }
+
+    /**
+     * 到达截止时间时取消生成，按正常结束回调 onDone。
+     */
+    @Override
+    public void streamAdvice(CombinedContext ctx, Deadline deadline, Consumer<String> onChunk, Runnable onDone) {
+        streamAdvice(adviceStream(ctx).take(deadline.remaining()), onChunk, onDone);
+    }
+
+    private void streamAdvice(Flux<String> content, Consumer<String> onChunk, Runnable onDone) {
+        AtomicBoolean completed = new AtomicBoolean(false);
+        content.subscribe(
+                chunk -> safeAccept(onChunk, chunk),
+                ex -> {
+                    log.error("LLM streaming failed", ex);
+                    runOnce(onDone, completed);
+                },
+                () -> runOnce(onDone, completed)
+        );
+    }
+
     @Override
     public String finalAdvice(CombinedContext ctx) {
         try {
             return chatClient.prompt()
                     .system(ADVICE_SYSTEM_PROMPT)
-                    .user(buildAdvicePrompt(ctx))
+                    .user(advicePromptBuilder.build(ctx))
                     .call()
                     .content();
         } catch (Exception ex) {
@@ -134,112 +203,72 @@ public class OpenAiLLMService implements LLMService {
         }
     }
 
-    private List<String> readStringArray(JsonNode node) {
-        if (node == null || !node.isArray()) {
-            return Collections.emptyList();
+    /**
+     * 以流式请求生成，到达截止时间时返回已生成的部分内容。
+     */
+    @Override
+    public String finalAdvice(CombinedContext ctx, Deadline deadline) {
+        try {
+            String advice = adviceStream(ctx)
+                    .take(deadline.remaining())
+                    .collect(Collectors.joining())
+                    .block();
+            return advice == null || advice.isEmpty() ? "{\"error\":\"advice generation failed\"}" : advice;
+        } catch (Exception ex) {
+            log.error("LLM final advice failed", ex);
+            return "{\"error\":\"advice generation failed\"}";
         }
-        return objectMapper.convertValue(node, new TypeReference<List<String>>() {
-        });
     }
 
-    private String buildAdvicePrompt(CombinedContext ctx) {
-        ExtractResult extract = ctx.getExtract();
-        String categories = extract != null && extract.getNewsCategories() != null && !extract.getNewsCategories().isEmpty()
-                ? String.join(", ", extract.getNewsCategories())
-                : "未知";
-        String products = extract != null && extract.getProducts() != null && !extract.getProducts().isEmpty()
-                ? String.join(", ", extract.getProducts())
-                : "未识别";
-        String newsBlock = renderNews(ctx.getNews());
-        String marketBlock = renderMarkets(ctx.getMarkets());
-        String userText = Objects.toString(ctx.getUserText(), "");
-        return String.format(ADVICE_USER_TEMPLATE, userText, categories, products, newsBlock, marketBlock);
-    }
-
-    private String renderNews(List<NewsItem> items) {
-        if (items == null || items.isEmpty()) {
-            return "- 暂无相关新闻";
-        }
-        return items.stream()
-                .map(this::formatNewsItem)
-                .collect(Collectors.joining("\n\n"));
+    private Flux<String> adviceStream(CombinedContext ctx) {
+        return chatClient.prompt()
+                .system(ADVICE_SYSTEM_PROMPT)
+                .user(advicePromptBuilder.build(ctx))
+                .stream()
+                .content();
     }
 
-    private String formatNewsItem(NewsItem item) {
-        String published = Objects.toString(item.getPublishedAt(), "未知时间");
-        String summary = Objects.toString(item.getSummary(), "暂无摘要");
-        return String.format("- %s (%s, %s) %s%n  摘要: %s",
-                Objects.toString(item.getTitle(), "未知标题"),
-                Objects.toString(item.getSource(), "未知来源"),
-                published,
-                Objects.toString(item.getUrl(), "#"),
-                summary);
+    private ExtractResult parseExtract(String raw) throws Exception {
+        JsonNode root = objectMapper.readTree(raw);
+        List<String> categories = readStringArray(root.get("newsCategories"));
+        List<String> products = readStringArray(root.get("products"));
+        String reasoning = root.path("reasoning").asText("");
+        return new ExtractResult(categories, products, reasoning);
     }
 
-    private String renderMarkets(List<MarketSnapshot> snapshots) {
-        if (snapshots == null || snapshots.isEmpty()) {
-            return "- 未获取到行情数据";
-        }
-        StringBuilder builder = new StringBuilder();
-        for (MarketSnapshot snapshot : snapshots) {
-            builder.append(String.format("- %s 最新价: %.2f (24h涨跌: %.2f%%) 高: %.2f 低: %.2f 量: %.2f RSI: %.2f%n",
-                    snapshot.getSymbol(),
-                    snapshot.getLastPrice(),
-                    snapshot.getChangePercent(),
-                    snapshot.getHigh24h(),
-                    snapshot.getLow24h(),
-                    snapshot.getVolume24h(),
-                    snapshot.getRsi()));
-            OrderBook orderBook = snapshot.getOrderBook();
-            if (orderBook != null) {
-                builder.append("  买单: ").append(formatLevels(orderBook.getBids())).append("\n");
-                builder.append("  卖单: ").append(formatLevels(orderBook.getAsks())).append("\n");
-            }
-            if (snapshot.getKlines() != null && !snapshot.getKlines().isEmpty()) {
-                builder.append("  近三条K线: ").append(formatKlines(snapshot.getKlines())).append("\n");
-            }
-        }
-        String result = builder.toString().trim();
-        return result.isEmpty() ? "- 未获取到行情数据" : result;
+    private ExtractResult fallbackExtract() {
+        return new ExtractResult(Collections.emptyList(), Collections.emptyList(), "fallback");
     }
 
-    private String formatLevels(List<OrderBookLevel> levels) {
-        if (levels == null || levels.isEmpty()) {
-            return "无";
+    @Override
+    public String summarizeConversation(String previousSummary, String transcript, int maxChars) {
+        try {
+            return chatClient.prompt()
+                    .system(SUMMARY_SYSTEM_PROMPT)
+                    .user(String.format(SUMMARY_USER_TEMPLATE, maxChars,
+                            previousSummary == null ? "（无）" : previousSummary, transcript))
+                    .call()
+                    .content();
+        } catch (Exception ex) {
+            log.warn("Failed to summarize conversation", ex);
+            return null;
         }
-        return levels.stream()
-                .limit(3)
-                .map(level -> String.format("%.2f@%.2f", level.getPrice(), level.getVolume()))
-                .collect(Collectors.joining(", "));
-    }
-
-    private String formatKlines(List<KlinePoint> klines) {
-        int size = klines.size();
-        int fromIndex = Math.max(0, size - 3);
-        List<KlinePoint> tail = klines.subList(fromIndex, size);
-        return tail.stream()
-                .map(k -> String.format("%s 收盘%.2f 量%.2f",
-                        formatTime(k.getStartTime()), k.getClose(), k.getVolume()))
-                .collect(Collectors.joining(" | "));
     }
 
-    private String formatTime(long epochMillis) {
-        if (epochMillis <= 0) {
-            return "-";
-        }
-        try {
-            return KLINE_TIME_FORMATTER.format(Instant.ofEpochMilli(epochMillis));
-        } catch (Exception ex) {
-            return "-";
+    private List<String> readStringArray(JsonNode node) {
+        if (node == null || !node.isArray()) {
+            return Collections.emptyList();
         }
+        return objectMapper.convertValue(node, new TypeReference<List<String>>() {
+        });
     }
 
-    private void safeAccept(Consumer<String> consumer, String chunk) {
+    private <T> void safeAccept(Consumer<T> consumer, T value) {
         if (consumer == null) {
             return;
         }
         try {
-            consumer.accept(chunk);
+            consumer.accept(value);
         } catch (Exception ex) {
             log.warn("Chunk consumer threw exception", ex);
         }
@@ -0,0 +1,201 @@
+package com.datamining.ssedemo.service.impl;
+
+import com.datamining.ssedemo.dto.ExtractResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 增量解析 LLM 流式输出的抽取 JSON：{"newsCategories": [...], "products": [...], "reasoning": "..."}。
+ * <p>
+ * 每收到一段文本调用一次 {@link #feed}。两个数组都闭合后 {@link #intentReady()} 即为 true，
+ * 不必等待 reasoning 生成完；reasoning 的内容随解析进度通过 {@link #drainReasoning()} 取出。
+ * 第一个 '{' 之前的内容（例如 ```json 代码块标记）与根对象闭合之后的内容都会被忽略。
+ * 非线程安全，同一时刻只能由一个线程调用。
+ */
+final class StreamingExtractParser {
+
+    private static final String CATEGORIES = "newsCategories";
+    private static final String PRODUCTS = "products";
+    private static final String REASONING = "reasoning";
+
+    private enum Role { KEY, ELEMENT, REASONING, SKIP }
+
+    private int depth;
+    private boolean started;
+    private boolean closed;
+    private boolean inString;
+    private boolean escape;
+    private int unicodeRemaining;
+    private int unicodeValue;
+    private Role role = Role.SKIP;
+    private final StringBuilder token = new StringBuilder();
+
+    private String currentKey;
+    private boolean afterColon;
+    private String arrayKey;
+    private List<String> arrayValues;
+
+    private List<String> categories;
+    private List<String> products;
+    private final StringBuilder reasoning = new StringBuilder();
+    private int drained;
+
+    void feed(CharSequence chunk) {
+        for (int i = 0; i < chunk.length() && !closed; i++) {
+            accept(chunk.charAt(i));
+        }
+    }
+
+    boolean intentReady() {
+        return (categories != null && products != null) || closed;
+    }
+
+    /**
+     * 是否解析到了任何字段；为 false 时说明输出不是预期的 JSON。
+     */
+    boolean hasContent() {
+        return categories != null || products != null || reasoning.length() > 0;
+    }
+
+    /**
+     * 当前的抽取结果，尚未闭合的数组按空列表处理。
+     */
+    ExtractResult result() {
+        return new ExtractResult(
+                categories != null ? categories : Collections.emptyList(),
+                products != null ? products : Collections.emptyList(),
+                reasoning.toString());
+    }
+
+    /**
+     * 返回上次调用之后新增的 reasoning 内容，没有新增时返回空串。
+     */
+    String drainReasoning() {
+        if (drained == reasoning.length()) {
+            return "";
+        }
+        String delta = reasoning.substring(drained);
+        drained = reasoning.length();
+        return delta;
+    }
+
+    private void accept(char c) {
+        if (!started) {
+            if (c == '{') {
+                started = true;
+                depth = 1;
+            }
+            return;
+        }
+        if (inString) {
+            acceptInString(c);
+            return;
+        }
+        switch (c) {
+            case '"' -> {
+                inString = true;
+                token.setLength(0);
+                role = stringRole();
+            }
+            case ':' -> {
+                if (depth == 1) {
+                    afterColon = true;
+                }
+            }
+            case ',' -> {
+                if (depth == 1) {
+                    afterColon = false;
+                }
+            }
+            case '[' -> {
+                depth++;
+                if (depth == 2 && afterColon && (CATEGORIES.equals(currentKey) || PRODUCTS.equals(currentKey))) {
+                    arrayKey = currentKey;
+                    arrayValues = new ArrayList<>();
+                }
+            }
+            case ']' -> {
+                if (depth == 2 && arrayKey != null) {
+                    if (CATEGORIES.equals(arrayKey)) {
+                        categories = arrayValues;
+                    } else {
+                        products = arrayValues;
+                    }
+                    arrayKey = null;
+                    arrayValues = null;
+                }
+                depth--;
+            }
+            case '{' -> depth++;
+            case '}' -> {
+                depth--;
+                closed = depth == 0;
+            }
+            default -> {
+                // 空白、数字与字面量不影响需要的字段
+            }
+        }
+    }
+
+    private Role stringRole() {
+        if (depth == 1 && !afterColon) {
+            return Role.KEY;
+        }
+        if (depth == 1 && REASONING.equals(currentKey)) {
+            return Role.REASONING;
+        }
+        if (depth == 2 && arrayKey != null) {
+            return Role.ELEMENT;
+        }
+        return Role.SKIP;
+    }
+
+    private void acceptInString(char c) {
+        if (unicodeRemaining > 0) {
+            unicodeValue = (unicodeValue << 4) | Character.digit(c, 16);
+            if (--unicodeRemaining == 0) {
+                append((char) unicodeValue);
+            }
+            return;
+        }
+        if (escape) {
+            escape = false;
+            switch (c) {
+                case 'u' -> {
+                    unicodeRemaining = 4;
+                    unicodeValue = 0;
+                }
+                case 'n' -> append('\n');
+                case 't' -> append('\t');
+                case 'r' -> append('\r');
+                case 'b' -> append('\b');
+                case 'f' -> append('\f');
+                default -> append(c);
+            }
+            return;
+        }
+        if (c == '\\') {
+            escape = true;
+        } else if (c == '"') {
+            inString = false;
+            if (role == Role.KEY) {
+                currentKey = token.toString();
+            } else if (role == Role.ELEMENT) {
+                arrayValues.add(token.toString());
+            }
+        } else {
+            append(c);
+        }
+    }
+
+    private void append(char c) {
+        switch (role) {
+            case REASONING -> reasoning.append(c);
+            case KEY, ELEMENT -> token.append(c);
+            default -> {
+            }
+        }
+    }
+}
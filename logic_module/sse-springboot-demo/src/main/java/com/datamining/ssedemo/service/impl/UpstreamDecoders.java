@@ -0,0 +1,366 @@
+package com.datamining.ssedemo.service.impl;
+
+import com.datamining.ssedemo.dto.KlineSeries;
+import com.datamining.ssedemo.dto.NewsItem;
+import com.datamining.ssedemo.dto.OrderBook;
+import com.datamining.ssedemo.dto.OrderBookLevel;
+import com.datamining.ssedemo.service.impl.UpstreamPayloads.ApiResponse;
+import com.datamining.ssedemo.service.impl.UpstreamPayloads.TickerPayload;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.NumberInput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 基于 {@link JsonParser} 的上游响应解码器：直接从字节流读出最终的 DTO 或列式 K 线，
+ * 不经过 String 响应体、{@code TypeReference} 映射与中间载荷对象。
+ * <p>
+ * 字段含义与容错规则与原先的 Jackson 映射一致：未知字段跳过，数值字段接受数字或数字字符串，null 视为 0。
+ */
+final class UpstreamDecoders {
+
+    /**
+     * 时间戳无法解析时的返回值。
+     */
+    static final long INVALID_TIME = Long.MIN_VALUE;
+
+    static final DataReader<List<NewsItem>> NEWS = UpstreamDecoders::readNews;
+    static final DataReader<TickerPayload> TICKER = UpstreamDecoders::readTicker;
+    static final DataReader<KlineSeries> KLINES = UpstreamDecoders::readKlines;
+    static final DataReader<OrderBook> DEPTH = UpstreamDecoders::readDepth;
+
+    private static final int DEPTH_LEVELS = 5;
+
+    private final JsonFactory jsonFactory;
+
+    UpstreamDecoders(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * 读取 {"code":..,"message":..,"data":..} 外壳，data 交给 reader 解码；响应体为空时返回 null。
+     */
+    <T> ApiResponse<T> decode(InputStream body, DataReader<T> reader) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return readEnvelope(parser, reader);
+        }
+    }
+
+    <T> ApiResponse<T> decode(byte[] body, DataReader<T> reader) throws IOException {
+        if (body == null || body.length == 0) {
+            return null;
+        }
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return readEnvelope(parser, reader);
+        }
+    }
+
+    @FunctionalInterface
+    interface DataReader<T> {
+        /**
+         * 调用时解析器位于 data 值的第一个 token，返回时位于该值的最后一个 token。
+         */
+        T read(JsonParser parser) throws IOException;
+    }
+
+    private static <T> ApiResponse<T> readEnvelope(JsonParser p, DataReader<T> reader) throws IOException {
+        JsonToken first = p.nextToken();
+        if (first == null) {
+            return null;
+        }
+        if (first != JsonToken.START_OBJECT) {
+            throw new JsonParseException(p, "响应不是 JSON 对象: " + first);
+        }
+        ApiResponse<T> response = new ApiResponse<>();
+        String field;
+        while ((field = p.nextFieldName()) != null) {
+            JsonToken token = p.nextToken();
+            switch (field) {
+                case "code" -> response.setCode(p.getValueAsInt());
+                case "message" -> response.setMessage(p.getValueAsString());
+                case "data" -> response.setData(token == JsonToken.VALUE_NULL ? null : reader.read(p));
+                default -> p.skipChildren();
+            }
+        }
+        return response;
+    }
+
+    private static List<NewsItem> readNews(JsonParser p) throws IOException {
+        if (!p.isExpectedStartArrayToken()) {
+            p.skipChildren();
+            return Collections.emptyList();
+        }
+        List<NewsItem> items = new ArrayList<>();
+        JsonToken token;
+        while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                p.skipChildren();
+                continue;
+            }
+            NewsItem item = new NewsItem();
+            String field;
+            while ((field = p.nextFieldName()) != null) {
+                p.nextToken();
+                switch (field) {
+                    case "title" -> item.setTitle(p.getValueAsString());
+                    case "source" -> item.setSource(p.getValueAsString());
+                    case "url" -> item.setUrl(p.getValueAsString());
+                    case "summary" -> item.setSummary(p.getValueAsString());
+                    case "published_at" -> item.setPublishedAt(p.getValueAsString());
+                    default -> p.skipChildren();
+                }
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static TickerPayload readTicker(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return null;
+        }
+        TickerPayload ticker = new TickerPayload();
+        String field;
+        while ((field = p.nextFieldName()) != null) {
+            p.nextToken();
+            switch (field) {
+                case "symbol" -> ticker.setSymbol(p.getValueAsString());
+                case "last_price" -> ticker.setLast_price(readDouble(p));
+                case "high24h" -> ticker.setHigh24h(readDouble(p));
+                case "low24h" -> ticker.setLow24h(readDouble(p));
+                case "volume24h" -> ticker.setVolume24h(readDouble(p));
+                case "change_percent" -> ticker.setChange_percent(readDouble(p));
+                default -> p.skipChildren();
+            }
+        }
+        return ticker;
+    }
+
+    /**
+     * 逐根读入列式序列，缺少或无法解析开始时间的蜡烛被丢弃；结果按开始时间升序。
+     */
+    private static KlineSeries readKlines(JsonParser p) throws IOException {
+        if (!p.isExpectedStartArrayToken()) {
+            p.skipChildren();
+            return KlineSeries.empty();
+        }
+        KlineSeries.Builder builder = KlineSeries.builder(64);
+        JsonToken token;
+        while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                p.skipChildren();
+                continue;
+            }
+            long startTime = INVALID_TIME;
+            double open = 0;
+            double high = 0;
+            double low = 0;
+            double close = 0;
+            double volume = 0;
+            String field;
+            while ((field = p.nextFieldName()) != null) {
+                p.nextToken();
+                switch (field) {
+                    case "start_time" -> startTime = readTimestamp(p);
+                    case "open_price" -> open = readDouble(p);
+                    case "high_price" -> high = readDouble(p);
+                    case "low_price" -> low = readDouble(p);
+                    case "close_price" -> close = readDouble(p);
+                    case "volume" -> volume = readDouble(p);
+                    default -> p.skipChildren();
+                }
+            }
+            if (startTime != INVALID_TIME) {
+                builder.add(startTime, open, high, low, close, volume);
+            }
+        }
+        return builder.sortByStartTime().build();
+    }
+
+    private static OrderBook readDepth(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return null;
+        }
+        List<OrderBookLevel> bids = Collections.emptyList();
+        List<OrderBookLevel> asks = Collections.emptyList();
+        String field;
+        while ((field = p.nextFieldName()) != null) {
+            p.nextToken();
+            switch (field) {
+                case "bids" -> bids = readLevels(p);
+                case "asks" -> asks = readLevels(p);
+                default -> p.skipChildren();
+            }
+        }
+        return new OrderBook(bids, asks);
+    }
+
+    /**
+     * 读取 [[price, volume, ...], ...]，只保留前 {@value #DEPTH_LEVELS} 档，不足两个数值的档位跳过。
+     */
+    private static List<OrderBookLevel> readLevels(JsonParser p) throws IOException {
+        if (!p.isExpectedStartArrayToken()) {
+            p.skipChildren();
+            return Collections.emptyList();
+        }
+        List<OrderBookLevel> levels = new ArrayList<>(DEPTH_LEVELS);
+        JsonToken token;
+        while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_ARRAY || levels.size() >= DEPTH_LEVELS) {
+                p.skipChildren();
+                continue;
+            }
+            double price = 0;
+            double volume = 0;
+            int count = 0;
+            while (p.nextToken() != JsonToken.END_ARRAY) {
+                if (count == 0) {
+                    price = readDouble(p);
+                } else if (count == 1) {
+                    volume = readDouble(p);
+                } else {
+                    p.skipChildren();
+                }
+                count++;
+            }
+            if (count >= 2) {
+                levels.add(new OrderBookLevel(price, volume));
+            }
+        }
+        return levels;
+    }
+
+    private static double readDouble(JsonParser p) throws IOException {
+        switch (p.currentToken()) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return p.getDoubleValue();
+            case VALUE_STRING:
+                String text = p.getText().trim();
+                if (text.isEmpty()) {
+                    return 0.0;
+                }
+                try {
+                    return NumberInput.parseDouble(text);
+                } catch (NumberFormatException ex) {
+                    return 0.0;
+                }
+            default:
+                p.skipChildren();
+                return 0.0;
+        }
+    }
+
+    /**
+     * 上游可能返回秒或毫秒数值、数字字符串，或 UTC 的 "yyyy-MM-dd HH:mm:ss"。字符串直接在解析器的字符缓冲区上解析。
+     */
+    private static long readTimestamp(JsonParser p) throws IOException {
+        switch (p.currentToken()) {
+            case VALUE_NUMBER_INT:
+                return normalizeEpoch(p.getLongValue());
+            case VALUE_NUMBER_FLOAT:
+                return normalizeEpoch((long) p.getDoubleValue());
+            case VALUE_STRING:
+                return parseTimestamp(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+            default:
+                p.skipChildren();
+                return INVALID_TIME;
+        }
+    }
+
+    /**
+     * 解析纯数字（秒或毫秒）或 "yyyy-MM-dd HH:mm:ss" / "yyyy-MM-ddTHH:mm:ss"（按 UTC），返回毫秒；
+     * 无法解析时返回 {@link #INVALID_TIME}。不创建任何对象。
+     */
+    static long parseTimestamp(char[] text, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+        while (start < end && text[start] <= ' ') {
+            start++;
+        }
+        while (end > start && text[end - 1] <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return INVALID_TIME;
+        }
+        boolean negative = text[start] == '-';
+        int digitsStart = negative ? start + 1 : start;
+        int digitCount = end - digitsStart;
+        if (digitCount > 0 && digitCount <= 18) {
+            long value = digits(text, digitsStart, digitCount);
+            if (value >= 0) {
+                return normalizeEpoch(negative ? -value : value);
+            }
+        }
+        if (end - start != 19
+                || text[start + 4] != '-' || text[start + 7] != '-'
+                || (text[start + 10] != ' ' && text[start + 10] != 'T')
+                || text[start + 13] != ':' || text[start + 16] != ':') {
+            return INVALID_TIME;
+        }
+        long year = digits(text, start, 4);
+        long month = digits(text, start + 5, 2);
+        long day = digits(text, start + 8, 2);
+        long hour = digits(text, start + 11, 2);
+        long minute = digits(text, start + 14, 2);
+        long second = digits(text, start + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, (int) month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID_TIME;
+        }
+        long days = daysFromCivil(year, (int) month, (int) day);
+        return (((days * 24 + hour) * 60 + minute) * 60 + second) * 1000L;
+    }
+
+    /**
+     * 小于 10^10 的值按秒处理。
+     */
+    private static long normalizeEpoch(long value) {
+        return value > 10_000_000_000L ? value : value * 1000L;
+    }
+
+    /**
+     * 读取固定位数的十进制数，遇到非数字返回 -1。
+     */
+    private static long digits(char[] text, int from, int count) {
+        long value = 0;
+        for (int i = from; i < from + count; i++) {
+            int d = text[i] - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private static int daysInMonth(long year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /**
+     * 公历日期到 1970-01-01 的天数（H. Hinnant 的 days_from_civil 算法）。
+     */
+    private static long daysFromCivil(long year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
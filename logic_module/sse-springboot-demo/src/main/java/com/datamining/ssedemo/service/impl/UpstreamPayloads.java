@@ -0,0 +1,218 @@
+package com.datamining.ssedemo.service.impl;
+
+import com.datamining.ssedemo.dto.ExtractResult;
+import com.datamining.ssedemo.dto.KlineSeries;
+import com.datamining.ssedemo.dto.MarketSnapshot;
+import com.datamining.ssedemo.dto.OrderBook;
+import com.datamining.ssedemo.dto.TechnicalIndicators;
+import com.datamining.ssedemo.market.IndicatorState;
+import com.datamining.ssedemo.market.KlineStore;
+import com.datamining.ssedemo.market.SymbolSeries;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.util.CollectionUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 新闻与行情服务的请求地址、响应外壳及其到 DTO 的映射，供阻塞与响应式两种协调器共用。
+ * 响应体的解码见 {@link UpstreamDecoders}。
+ */
+final class UpstreamPayloads {
+
+    static final Duration DEFAULT_LOOKBACK = Duration.ofHours(24);
+    static final String KLINE_INTERVAL = "1H";
+    static final Duration KLINE_INTERVAL_DURATION = Duration.ofHours(1);
+    static final int KLINE_LIMIT = 120;
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
+
+    private UpstreamPayloads() {
+    }
+
+    static URI newsSearchUri(String newsBaseUrl, ExtractResult extract, Instant from, Instant to) {
+        return UriComponentsBuilder.fromHttpUrl(newsBaseUrl)
+                .path("/search")
+                .queryParam("keyword", buildKeyword(extract))
+                .queryParam("from", DATE_FORMATTER.format(from.atZone(ZoneOffset.UTC)))
+                .queryParam("to", DATE_FORMATTER.format(to.atZone(ZoneOffset.UTC)))
+                .queryParam("limit", 5)
+                .queryParam("sources", "")
+                .queryParam("region", "en")
+                .build()
+                .encode()
+                .toUri();
+    }
+
+    static URI tickerUri(String marketBaseUrl, String product) {
+        return UriComponentsBuilder.fromHttpUrl(marketBaseUrl)
+                .path("/get_ticker")
+                .queryParam("platform", "OKX")
+                .queryParam("symbol", product)
+                .build()
+                .encode()
+                .toUri();
+    }
+
+    static URI klinesUri(String marketBaseUrl, String product, Instant from, Instant to, int limit) {
+        return UriComponentsBuilder.fromHttpUrl(marketBaseUrl)
+                .path("/get_klines")
+                .queryParam("platform", "OKX")
+                .queryParam("symbol", product)
+                .queryParam("market_type", "SPOT")
+                .queryParam("interval", KLINE_INTERVAL)
+                .queryParam("start_time", from.getEpochSecond())
+                .queryParam("end_time", to.getEpochSecond())
+                .queryParam("limit", limit)
+                .build()
+                .encode()
+                .toUri();
+    }
+
+    static URI depthUri(String marketBaseUrl, String product) {
+        return UriComponentsBuilder.fromHttpUrl(marketBaseUrl)
+                .path("/get_depth")
+                .queryParam("platform", "OKX")
+                .queryParam("symbol", product)
+                .build()
+                .encode()
+                .toUri();
+    }
+
+    static Duration normalizeWindow(Duration lookback) {
+        if (lookback == null || lookback.isNegative() || lookback.isZero()) {
+            return DEFAULT_LOOKBACK;
+        }
+        return lookback;
+    }
+
+    static String buildKeyword(ExtractResult extract) {
+        if (extract == null) {
+            return "";
+        }
+        List<String> parts = new ArrayList<>();
+        if (!CollectionUtils.isEmpty(extract.getNewsCategories())) {
+            parts.addAll(extract.getNewsCategories());
+        }
+        if (!CollectionUtils.isEmpty(extract.getProducts())) {
+            parts.addAll(extract.getProducts());
+        }
+        if (parts.isEmpty()) {
+            return "";
+        }
+        return String.join(" OR ", parts);
+    }
+
+    /**
+     * 将本次拉取到的蜡烛按时间顺序合并进序列，淘汰窗口外的旧蜡烛；指标由序列增量维护，无需按窗口重算。
+     * 合并后序列仍为空时返回 null。
+     */
+    static KlineResult mergeKlines(SymbolSeries series, KlineSeries candles, Instant windowStart) {
+        SymbolSeries.View view;
+        synchronized (series) {
+            series.mergeAll(candles);
+            series.evictBefore(windowStart.toEpochMilli());
+            view = series.view();
+        }
+        if (view == null) {
+            return null;
+        }
+        return new KlineResult(view.rsi(), view.klines(), view.indicators());
+    }
+
+    /**
+     * 合并一次 kline 响应：有蜡烛返回时才取得或创建该标的的缓冲区；否则只用已有缓冲区，没有时返回 null。
+     */
+    static KlineResult mergeResponse(KlineStore store, String product, ApiResponse<KlineSeries> body, Instant windowStart) {
+        boolean hasCandles = body.getCode() == 200 && body.getData() != null && body.getData().size() > 0;
+        if (hasCandles) {
+            return mergeKlines(store.series(product, KLINE_INTERVAL, KLINE_INTERVAL_DURATION), body.getData(), windowStart);
+        }
+        return bufferedKlines(store, product, windowStart);
+    }
+
+    /**
+     * 缓冲区中已有的窗口，没有缓冲区或窗口为空时返回 null。
+     */
+    static KlineResult bufferedKlines(KlineStore store, String product, Instant windowStart) {
+        SymbolSeries series = store.find(product, KLINE_INTERVAL);
+        return series == null ? null : mergeKlines(series, KlineSeries.empty(), windowStart);
+    }
+
+    static KlineResult emptyKlineResult() {
+        return new KlineResult(IndicatorState.NEUTRAL_RSI, KlineSeries.empty(), null);
+    }
+
+    static MarketSnapshot toSnapshot(TickerPayload ticker, KlineResult klineResult, OrderBook orderBook) {
+        return new MarketSnapshot(
+                ticker.getSymbol(),
+                ticker.getLastPrice(),
+                ticker.getHigh24h(),
+                ticker.getLow24h(),
+                ticker.getVolume24h(),
+                ticker.getChangePercent(),
+                klineResult.getRsi(),
+                klineResult.getKlines(),
+                orderBook,
+                klineResult.getIndicators()
+        );
+    }
+
+    @Getter
+    @Setter
+    static class ApiResponse<T> {
+        private int code;
+        private T data;
+        private String message;
+    }
+
+    @Getter
+    @Setter
+    static class TickerPayload {
+        private String symbol;
+        private double last_price;
+        private double high24h;
+        private double low24h;
+        private double volume24h;
+        private double change_percent;
+
+        double getLastPrice() {
+            return last_price;
+        }
+
+        double getChangePercent() {
+            return change_percent;
+        }
+    }
+
+    static class KlineResult {
+        private final double rsi;
+        private final KlineSeries klines;
+        private final TechnicalIndicators indicators;
+
+        KlineResult(double rsi, KlineSeries klines, TechnicalIndicators indicators) {
+            this.rsi = rsi;
+            this.klines = klines;
+            this.indicators = indicators;
+        }
+
+        double getRsi() {
+            return rsi;
+        }
+
+        KlineSeries getKlines() {
+            return klines;
+        }
+
+        TechnicalIndicators getIndicators() {
+            return indicators;
+        }
+    }
+}
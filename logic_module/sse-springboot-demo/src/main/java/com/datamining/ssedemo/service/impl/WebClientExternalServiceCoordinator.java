@@ -0,0 +1,368 @@
+package com.datamining.ssedemo.service.impl;
+
+import com.datamining.ssedemo.dto.ExtractResult;
+import com.datamining.ssedemo.dto.MarketSnapshot;
+import com.datamining.ssedemo.dto.NewsItem;
+import com.datamining.ssedemo.dto.OrderBook;
+import com.datamining.ssedemo.market.KlineStore;
+import com.datamining.ssedemo.market.SymbolSeries;
+import com.datamining.ssedemo.resilience.CircuitBreaker;
+import com.datamining.ssedemo.resilience.CircuitBreakerRegistry;
+import com.datamining.ssedemo.resilience.LastKnownGood;
+import com.datamining.ssedemo.service.Deadline;
+import com.datamining.ssedemo.service.ReactiveExternalServiceCoordinator;
+import com.datamining.ssedemo.service.impl.UpstreamDecoders.DataReader;
+import com.datamining.ssedemo.service.impl.UpstreamPayloads.ApiResponse;
+import com.datamining.ssedemo.service.impl.UpstreamPayloads.KlineResult;
+import com.datamining.ssedemo.service.impl.UpstreamPayloads.TickerPayload;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 基于 WebClient 的非阻塞协调器实现，请求地址、载荷映射与降级策略与
+ * {@link HttpExternalServiceCoordinator} 保持一致。通过 external.services.client=reactive 启用。
+ */
+@Slf4j
+@Service
+@ConditionalOnExpression("'${demo.mock:true}' == 'false' and '${external.services.client:blocking}' == 'reactive'")
+public class WebClientExternalServiceCoordinator implements ReactiveExternalServiceCoordinator {
+
+    private static final int FALLBACK_ENTRIES = 256;
+    /**
+     * 每个标的并行发出的请求数（ticker、kline、depth）。
+     */
+    private static final int REQUESTS_PER_SYMBOL = 3;
+
+    private final WebClient webClient;
+    /**
+     * 行情服务专用客户端：连接池上限即对行情服务的最大并发请求数，所有请求共享，与阻塞实现的 market-fetch 线程池对应。
+     * 超时从拿到连接、发出请求后开始计算，排队等待连接的时间只受标的超时约束，不计入熔断统计。
+     */
+    private final WebClient marketClient;
+    private final ConnectionProvider marketConnections;
+    private final UpstreamDecoders decoders;
+    private final String newsBaseUrl;
+    private final String marketBaseUrl;
+    private final Duration newsTimeout;
+    /**
+     * 单次请求内同时在途的标的数，按每个标的的请求数折算；跨请求的总并发由 {@link #marketConnections} 限制。
+     */
+    private final int marketSymbolConcurrency;
+    private final Duration marketSymbolTimeout;
+    private final MarketDataCache marketDataCache;
+    private final KlineStore klineStore;
+    private final boolean newsEnabled;
+    private final boolean marketEnabled;
+    private final CircuitBreaker newsBreaker;
+    private final CircuitBreaker marketBreaker;
+    /**
+     * 各上游最近一次成功的数据，熔断或调用失败时作为降级结果。
+     */
+    private final LastKnownGood<String, List<NewsItem>> newsFallback = new LastKnownGood<>(FALLBACK_ENTRIES);
+    private final LastKnownGood<String, TickerPayload> tickerFallback = new LastKnownGood<>(FALLBACK_ENTRIES);
+    private final LastKnownGood<String, OrderBook> depthFallback = new LastKnownGood<>(FALLBACK_ENTRIES);
+
+    public WebClientExternalServiceCoordinator(WebClient.Builder builder,
+                                               ObjectMapper objectMapper,
+                                               MarketDataCache marketDataCache,
+                                               KlineStore klineStore,
+                                               CircuitBreakerRegistry circuitBreakers,
+                                               @Value("${external.services.news.base-url:http://127.0.0.1:9106/irls/news}") String newsBaseUrl,
+                                               @Value("${external.services.news.timeout:PT5S}") Duration newsTimeout,
+                                               @Value("${external.services.news.enabled:true}") boolean newsEnabled,
+                                               @Value("${external.services.market.base-url:http://127.0.0.1:9105/irls/market}") String marketBaseUrl,
+                                               @Value("${external.services.market.timeout:PT5S}") Duration marketTimeout,
+                                               @Value("${external.services.market.enabled:true}") boolean marketEnabled,
+                                               @Value("${external.services.market.max-concurrency:8}") int marketMaxConcurrency,
+                                               @Value("${external.services.market.symbol-timeout:PT6S}") Duration marketSymbolTimeout) {
+        this.webClient = builder.build();
+        this.marketConnections = ConnectionProvider.builder("market")
+                .maxConnections(Math.max(1, marketMaxConcurrency))
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(marketSymbolTimeout)
+                .build();
+        this.marketClient = builder.clone()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(marketConnections)
+                        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) marketTimeout.toMillis())
+                        .responseTimeout(marketTimeout)))
+                .build();
+        this.decoders = new UpstreamDecoders(objectMapper.getFactory());
+        this.newsBaseUrl = newsBaseUrl;
+        this.marketBaseUrl = marketBaseUrl;
+        this.newsTimeout = newsTimeout;
+        this.newsEnabled = newsEnabled;
+        this.marketEnabled = marketEnabled;
+        this.newsBreaker = circuitBreakers.breaker("news");
+        this.marketBreaker = circuitBreakers.breaker("market");
+        this.marketSymbolConcurrency = Math.max(1, marketMaxConcurrency / REQUESTS_PER_SYMBOL);
+        this.marketSymbolTimeout = marketSymbolTimeout;
+        this.marketDataCache = marketDataCache;
+        this.klineStore = klineStore;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        marketConnections.dispose();
+    }
+
+    @Override
+    public Mono<List<NewsItem>> fetchNews(ExtractResult extract, Duration lookback) {
+        if (!newsEnabled) {
+            return Mono.just(Collections.emptyList());
+        }
+        String keyword = UpstreamPayloads.buildKeyword(extract);
+        return call(webClient, newsBreaker, () -> {
+                    Duration window = UpstreamPayloads.normalizeWindow(lookback);
+                    Instant now = Instant.now();
+                    return UpstreamPayloads.newsSearchUri(newsBaseUrl, extract, now.minus(window), now);
+                }, newsTimeout, UpstreamDecoders.NEWS)
+                .map(body -> {
+                    if (body.getCode() != 200 || CollectionUtils.isEmpty(body.getData())) {
+                        log.info("新闻服务无数据: {}", body.getMessage());
+                        return Collections.<NewsItem>emptyList();
+                    }
+                    newsFallback.put(keyword, body.getData());
+                    return body.getData();
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> lastGoodNews(keyword)))
+                .onErrorResume(ex -> {
+                    log.error("调用新闻服务失败", ex);
+                    return Mono.just(lastGoodNews(keyword));
+                });
+    }
+
+    /**
+     * 请求预算在熔断器统计之外生效：熔断器只按 news timeout 判定上游是否失败，
+     * 预算先耗尽时取消请求（只归还探测名额）并返回最近一次成功的数据。
+     */
+    @Override
+    public Mono<List<NewsItem>> fetchNews(ExtractResult extract, Duration lookback, Deadline deadline) {
+        return Mono.defer(() -> {
+            String keyword = UpstreamPayloads.buildKeyword(extract);
+            return fetchNews(extract, lookback)
+                    .timeout(deadline.remaining(), Mono.fromSupplier(() -> {
+                        log.warn("新闻服务在请求预算内未返回，使用最近一次成功的数据");
+                        return lastGoodNews(keyword);
+                    }));
+        });
+    }
+
+    @Override
+    public Flux<MarketSnapshot> fetchMarket(ExtractResult extract, Duration lookback) {
+        return fetchMarket(extract, lookback, marketSymbolTimeout);
+    }
+
+    /**
+     * 单个标的的等待时间取 symbol-timeout 与剩余时间中较小者。
+     */
+    @Override
+    public Flux<MarketSnapshot> fetchMarket(ExtractResult extract, Duration lookback, Deadline deadline) {
+        return Flux.defer(() -> fetchMarket(extract, lookback, deadline.cap(marketSymbolTimeout)));
+    }
+
+    private Flux<MarketSnapshot> fetchMarket(ExtractResult extract, Duration lookback, Duration symbolTimeout) {
+        if (extract == null || CollectionUtils.isEmpty(extract.getProducts())) {
+            return Flux.empty();
+        }
+        if (!marketEnabled) {
+            return Flux.empty();
+        }
+        Duration window = UpstreamPayloads.normalizeWindow(lookback);
+        Instant now = Instant.now();
+        Instant from = now.minus(window);
+        // flatMapSequential 保证输出顺序与输入一致；每个标的发出 3 个请求，在途标的数按此折算
+        return Flux.fromIterable(extract.getProducts())
+                .flatMapSequential(product -> fetchSnapshot(product, window, from, now)
+                                .timeout(symbolTimeout)
+                                .onErrorResume(ex -> {
+                                    if (ex instanceof TimeoutException) {
+                                        log.warn("获取 {} 行情超过 {}，跳过该标的", product, symbolTimeout);
+                                    } else {
+                                        log.error("获取 {} 行情失败", product, ex);
+                                    }
+                                    return Mono.empty();
+                                }),
+                        marketSymbolConcurrency);
+    }
+
+    /**
+     * 某项获取失败或熔断时使用该项最近一次成功的数据，ticker 仍然缺失时返回空。
+     */
+    private Mono<MarketSnapshot> fetchSnapshot(String product, Duration window, Instant from, Instant to) {
+        return Mono.zip(fetchTicker(product), fetchKlines(product, window, from, to), fetchDepth(product))
+                .flatMap(tuple -> {
+                    Optional<TickerPayload> tickerOpt = tuple.getT1()
+                            .or(() -> Optional.ofNullable(tickerFallback.get(product)));
+                    if (tickerOpt.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    OrderBook orderBook = tuple.getT3().orElseGet(() -> depthFallback.get(product));
+                    return Mono.just(UpstreamPayloads.toSnapshot(tickerOpt.get(), tuple.getT2(), orderBook));
+                });
+    }
+
+    private Mono<Optional<TickerPayload>> fetchTicker(String product) {
+        return Mono.fromFuture(() -> marketDataCache.ticker(product, () -> loadTicker(product).toFuture()))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    private Mono<KlineResult> fetchKlines(String product, Duration window, Instant from, Instant to) {
+        return Mono.fromFuture(() -> marketDataCache.klines(product, window, () -> loadKlines(product, from, to).toFuture()))
+                .switchIfEmpty(Mono.fromSupplier(() -> Optional.ofNullable(bufferedKlines(product, from))
+                        .orElseGet(UpstreamPayloads::emptyKlineResult)));
+    }
+
+    private Mono<Optional<OrderBook>> fetchDepth(String product) {
+        return Mono.fromFuture(() -> marketDataCache.depth(product, () -> loadDepth(product).toFuture()))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    private Mono<TickerPayload> loadTicker(String product) {
+        return call(marketClient, marketBreaker, () -> UpstreamPayloads.tickerUri(marketBaseUrl, product), null, UpstreamDecoders.TICKER)
+                .flatMap(body -> {
+                    if (body.getCode() != 200 || body.getData() == null) {
+                        log.warn("行情 ticker 接口返回失败: {} - {}", body.getCode(), body.getMessage());
+                        return Mono.empty();
+                    }
+                    tickerFallback.put(product, body.getData());
+                    return Mono.just(body.getData());
+                })
+                .onErrorResume(ex -> {
+                    log.error("获取 {} ticker 失败", product, ex);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * 增量数据合并进缓冲区后返回完整窗口；失败或熔断时为空的 Mono，不写入缓存，由调用方改用缓冲区中已有的数据。
+     */
+    private Mono<KlineResult> loadKlines(String product, Instant from, Instant to) {
+        return call(marketClient, marketBreaker, () -> {
+                    SymbolSeries series = klineStore.find(product, UpstreamPayloads.KLINE_INTERVAL);
+                    Instant fetchFrom = KlineStore.fetchFrom(series, from, UpstreamPayloads.KLINE_INTERVAL_DURATION);
+                    int limit = KlineStore.expectedBars(fetchFrom, to, UpstreamPayloads.KLINE_INTERVAL_DURATION, UpstreamPayloads.KLINE_LIMIT);
+                    return UpstreamPayloads.klinesUri(marketBaseUrl, product, fetchFrom, to, limit);
+                }, null, UpstreamDecoders.KLINES)
+                .flatMap(body -> Mono.justOrEmpty(UpstreamPayloads.mergeResponse(klineStore, product, body, from)))
+                .onErrorResume(ex -> {
+                    log.error("获取 {} kline 失败", product, ex);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<OrderBook> loadDepth(String product) {
+        return call(marketClient, marketBreaker, () -> UpstreamPayloads.depthUri(marketBaseUrl, product), null, UpstreamDecoders.DEPTH)
+                .flatMap(body -> {
+                    if (body.getCode() != 200 || body.getData() == null) {
+                        log.warn("行情 depth 接口返回失败: {} - {}", body.getCode(), body.getMessage());
+                        return Mono.empty();
+                    }
+                    depthFallback.put(product, body.getData());
+                    return Mono.just(body.getData());
+                })
+                .onErrorResume(ex -> {
+                    log.error("获取 {} depth 失败", product, ex);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * 经过熔断器发起请求并解码：熔断打开时直接返回空；传输异常、非 2xx、空响应体与解码失败计为失败，
+     * 拿到响应外壳计为成功（业务 code 由调用方处理），被取消时只归还探测名额。
+     * 失败以空的 Mono 或错误信号结束。timeout 为 null 时使用客户端自身的响应超时。
+     */
+    private <T> Mono<ApiResponse<T>> call(WebClient client, CircuitBreaker breaker, Supplier<URI> uri, Duration timeout,
+                                          DataReader<T> reader) {
+        return Mono.defer(() -> {
+            if (!breaker.tryAcquire()) {
+                return Mono.empty();
+            }
+            AtomicBoolean settled = new AtomicBoolean(false);
+            URI target = uri.get();
+            return get(client, target, timeout)
+                    .flatMap(response -> Mono.fromCallable(() -> {
+                        ApiResponse<T> body = decode(response, reader);
+                        if (body == null) {
+                            log.warn("{} 返回异常状态或响应体为空: {}", target.getPath(), response.getStatusCode());
+                        }
+                        return body;
+                    }))
+                    .doOnNext(body -> {
+                        if (settled.compareAndSet(false, true)) {
+                            breaker.onSuccess();
+                        }
+                    })
+                    .doOnError(ex -> {
+                        if (settled.compareAndSet(false, true)) {
+                            breaker.onFailure();
+                        }
+                    })
+                    .doFinally(signal -> {
+                        if (settled.compareAndSet(false, true)) {
+                            if (signal == SignalType.ON_COMPLETE) {
+                                breaker.onFailure();
+                            } else {
+                                breaker.release();
+                            }
+                        }
+                    });
+        });
+    }
+
+    /**
+     * 非 2xx 状态不视为异常，交给 {@link #call} 统一计入熔断统计。响应体以字节读取，由 {@link UpstreamDecoders} 直接解码。
+     */
+    private Mono<ResponseEntity<byte[]>> get(WebClient client, URI uri, Duration timeout) {
+        Mono<ResponseEntity<byte[]>> response = client.get()
+                .uri(uri)
+                .retrieve()
+                .onStatus(status -> !status.is2xxSuccessful(), r -> Mono.empty())
+                .toEntity(byte[].class);
+        return timeout == null ? response : response.timeout(timeout);
+    }
+
+    /**
+     * 非 2xx 或响应体为空时返回 null。
+     */
+    private <T> ApiResponse<T> decode(ResponseEntity<byte[]> response, DataReader<T> reader) throws Exception {
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            return null;
+        }
+        return decoders.decode(response.getBody(), reader);
+    }
+
+    private List<NewsItem> lastGoodNews(String keyword) {
+        List<NewsItem> news = newsFallback.get(keyword);
+        return news == null ? Collections.emptyList() : news;
+    }
+
+    private KlineResult bufferedKlines(String product, Instant windowStart) {
+        return UpstreamPayloads.bufferedKlines(klineStore, product, windowStart);
+    }
+}